@@ -3,10 +3,15 @@ package br.edu.ifspsaocarlos.sdm.kifurecorder;
 import android.app.Activity;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Environment;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 
+import java.io.File;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.FileHelper;
+
 public class InitialActivity extends Activity implements View.OnClickListener {
 
     @Override
@@ -22,6 +27,21 @@ public class InitialActivity extends Activity implements View.OnClickListener {
         btnStartRecording.setOnClickListener(this);
         btnInstructions.setOnClickListener(this);
         btnCredits.setOnClickListener(this);
+
+        recoverUnfinishedGames();
+    }
+
+    /**
+     * Writes the SGF files of the games whose recording was interrupted (for example, if the app
+     * crashed) from their journals.
+     */
+    private void recoverUnfinishedGames() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                FileHelper.recoverUnfinishedGames(new File(Environment.getExternalStorageDirectory(), "kifu_recorder"));
+            }
+        }, "KifuRecorder-game-recovery").start();
     }
 
     @Override
@@ -7,7 +7,7 @@ import android.content.Intent;
 import android.media.AudioManager;
 import android.media.SoundPool;
 import android.os.Bundle;
-import android.os.SystemClock;
+import android.os.Environment;
 import android.util.Log;
 import android.view.View;
 import android.view.WindowManager;
@@ -20,74 +20,44 @@ import org.opencv.android.BaseLoaderCallback;
 import org.opencv.android.CameraBridgeViewBase;
 import org.opencv.android.LoaderCallbackInterface;
 import org.opencv.android.OpenCVLoader;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfPoint;
-import org.opencv.core.Point;
-import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
 
 import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Board;
 import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Game;
 import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Move;
-import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.Drawer;
-import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.stoneDetector.StoneDetector;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.RecordingSession;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline.Frame;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline.FrameOverlay;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline.FramePipeline;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline.PipelineStage;
 import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.FileHelper;
-import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.ImageUtils;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.GameJournal;
 import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.Logger;
 import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.LoggingConfiguration;
-import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Ponto;
-import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.boardDetector.BoardDetector;
 import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Corner;
-import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.CornerDetector;
-import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.similarityCalculator.FingerprintMatching;
-import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.similarityCalculator.SimilarityCalculatorInterface;
 
 public class RecordGameActivity extends Activity implements CameraBridgeViewBase.CvCameraViewListener2, View.OnClickListener {
 
-    public static int STATE_RUNNING = 1;
-    public static int STATE_LOOKING_FOR_BOARD = 2;
-    private static int MOVEMENT_THRESHOLD = 10;
-    private int state;
-
     Logger logger;
     FileHelper fileHelper;
 
-    BoardDetector boardDetector = new BoardDetector();
-    StoneDetector stoneDetector = new StoneDetector();
-    CornerDetector[] cornerDetector;
+    // Recognition of the moves from the camera frames
+    RecordingSession session;
     Game game;
-    Board lastDetectedBoard;
 
     int moveCounter = 0;
-    // Time during which a detected board must remain equal to be registered by the detector
-    long timeLimit = 2000;
-    long timeOfLastBoardDetection;
-    long timeSinceLastBoardChange;
-    boolean paused = false;
-    // TODO: Check if this can be replaced by timeSinceLastBoardChange
-    long timeOfLastImageProcessing;
-    boolean isCornerTrackingActive = true;
-    Mat lastValidOrtogonalBoardImage = null;
-    SimilarityCalculatorInterface fingerprintMatching = new FingerprintMatching();
-
-    // This array stores the number of frames that each corner has stayed without
-    // ellipses being detected over them. This is used for false positive checking
-    int[] numberOfFramesWithoutStone = { 0, 0, 0, 0 };
-    // This is also used to bring the detector back when it's strayed too far away
-    int numberOfFramesWithDissimilarOrtogonalImages = 0;
 
     // Domain objects
     // Board dimension can be 9x9, 13x13 or 19x19
     int boardDimension;
-    Corner[] boardCorners;
-    Corner[] originalBoardCorners;
     Mat cameraFrame;
-    // Contains the board corners
-    Mat boardPositionInImage;
 
-    // Board image transformed to orthogonal perspective
-    Mat orthogonalBoard;
-    MatOfPoint boardContour;
+    // Frames are processed off the camera thread, one stage per worker thread. The camera
+    // callback only submits frames and draws the overlay most recently published by the stages.
+    FramePipeline pipeline;
+    volatile FrameOverlay overlay;
 
     private ImageButton btnUndoLastMove;
     private ImageButton btnRotateCounterClockwise;
@@ -122,12 +92,12 @@ public class RecordGameActivity extends Activity implements CameraBridgeViewBase
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_game_recording);
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
-        state = STATE_RUNNING;
 
         initializeCamera();
         initializeProcessing();
         initializeUserInterface();
         initializeLogging();
+        initializePipeline();
 
         Log.i("KifuRecorder", "onCreate() finished");
     }
@@ -145,31 +115,16 @@ public class RecordGameActivity extends Activity implements CameraBridgeViewBase
         String komi        = i.getStringExtra("komi");
         boardDimension = i.getIntExtra("boardDimension", -1);
         int[] foundBoardCorners = i.getIntArrayExtra("boardPositionInImage");
-        stoneDetector.setBoardDimension(boardDimension);
 
+        Game.setApplicationVersion(BuildConfig.VERSION_NAME);
         game = new Game(boardDimension, blackPlayer, whitePlayer, komi);
-        lastDetectedBoard = new Board(boardDimension);
-        timeOfLastBoardDetection = SystemClock.elapsedRealtime();
-        timeSinceLastBoardChange = 0;
-        timeOfLastImageProcessing = SystemClock.elapsedRealtime();
-
-        originalBoardCorners = new Corner[4];
-        originalBoardCorners[0] = new Corner(foundBoardCorners[0], foundBoardCorners[1]);
-        originalBoardCorners[1] = new Corner(foundBoardCorners[2], foundBoardCorners[3]);
-        originalBoardCorners[2] = new Corner(foundBoardCorners[4], foundBoardCorners[5]);
-        originalBoardCorners[3] = new Corner(foundBoardCorners[6], foundBoardCorners[7]);
-        boardCorners = new Corner[4];
+
+        Corner[] boardCorners = new Corner[4];
         boardCorners[0] = new Corner(foundBoardCorners[0], foundBoardCorners[1]);
         boardCorners[1] = new Corner(foundBoardCorners[2], foundBoardCorners[3]);
         boardCorners[2] = new Corner(foundBoardCorners[4], foundBoardCorners[5]);
         boardCorners[3] = new Corner(foundBoardCorners[6], foundBoardCorners[7]);
-        cornerDetector = new CornerDetector[4];
-        for (int cornerIndex = 0; cornerIndex < 4; cornerIndex++) {
-            cornerDetector[cornerIndex] = new CornerDetector();
-            cornerDetector[cornerIndex].setCorner(boardCorners[cornerIndex]);
-            cornerDetector[cornerIndex].setCornerIndex(cornerIndex + 1);
-        }
-        processBoardCorners();
+        session = new RecordingSession(game, boardCorners);
     }
 
     private void initializeUserInterface() {
@@ -205,43 +160,82 @@ public class RecordGameActivity extends Activity implements CameraBridgeViewBase
         LoggingConfiguration.activateLogging(LoggingConfiguration.CORNER_POSITIONS);
         LoggingConfiguration.activateLogging(LoggingConfiguration.NUMBER_OF_QUADRILATERALS_FOUND_BY_BOARD_DETECTOR);
 
-        fileHelper = new FileHelper(game);
+        fileHelper = new FileHelper(game, new File(Environment.getExternalStorageDirectory(), "kifu_recorder"));
         logger = new Logger(game, fileHelper);
 
-        for (int cornerIndex = 0; cornerIndex < 4; cornerIndex++) {
-            cornerDetector[cornerIndex].setFileHelper(fileHelper);
-        }
+        session.setLogger(logger);
+        session.setFileHelper(fileHelper);
+        session.setJournal(new GameJournal(fileHelper.getJournalFile()));
     }
 
-    private void processBoardCorners() {
-        Point[] cornerPoints = new Point[4];
-        for (int i = 0; i < 4; i++) {
-            Ponto ponto = boardCorners[i].getRealCornerPosition();
-            cornerPoints[i] = new Point(ponto.x, ponto.y);
-        }
-
-        boardPositionInImage = new Mat(4, 1, CvType.CV_32FC2);
-        boardPositionInImage.put(0, 0,
-                cornerPoints[0].x, cornerPoints[0].y,
-                cornerPoints[1].x, cornerPoints[1].y,
-                cornerPoints[2].x, cornerPoints[2].y,
-                cornerPoints[3].x, cornerPoints[3].y);
-
-        boardContour = new MatOfPoint(cornerPoints);
+    private void initializePipeline() {
+        pipeline = new FramePipeline("KifuRecorder");
+        pipeline.addStage("corner-tracking", new PipelineStage() {
+            @Override
+            public boolean process(Frame frame) {
+                boolean isBoardInsideContour = session.trackCorners(frame);
+                publishOverlay();
+                return isBoardInsideContour;
+            }
+        });
+        pipeline.addStage("warp", new PipelineStage() {
+            @Override
+            public boolean process(Frame frame) {
+                boolean wasImageWarped = session.warpBoardImage(frame);
+                if (wasImageWarped) {
+                    publishOverlay();
+                }
+                return wasImageWarped;
+            }
+        });
+        pipeline.addStage("stone-detection", new PipelineStage() {
+            @Override
+            public boolean process(Frame frame) {
+                return session.detectStones(frame);
+            }
+        });
+        // Only the frames that added a move go on to the persistence stage
+        pipeline.addStage("game-update", new PipelineStage() {
+            @Override
+            public boolean process(Frame frame) {
+                boolean wasMoveAdded = session.updateGame(frame);
+                if (wasMoveAdded) {
+                    newMoveWasAdded();
+                } else {
+                    publishOverlay();
+                }
+                return wasMoveAdded;
+            }
+        });
+        pipeline.addStage("persistence", new PipelineStage() {
+            @Override
+            public boolean process(Frame frame) {
+                saveGameRecordOnDisk();
+                return true;
+            }
+        });
+        pipeline.setFrameCompletionListener(new FramePipeline.FrameCompletionListener() {
+            @Override
+            public void onFrameCompleted(Frame frame) {
+                session.onFrameCompleted(frame);
+            }
+        });
+        publishOverlay();
     }
 
     @Override
     public void onRestoreInstanceState(Bundle savedInstaceState) {
         super.onRestoreInstanceState(savedInstaceState);
-        fileHelper.restoreGameStoredTemporarily(game, boardCorners);
-        processBoardCorners();
+        session.restoreStoredTemporarily(fileHelper);
+        publishOverlay();
     }
 
     @Override
     public void onPause() {
         super.onPause();
         Log.d("KifuRecorder", "RecordGameActivity.onPause");
-        fileHelper.storeGameTemporarily(game, boardCorners);
+        session.storeTemporarily(fileHelper);
+        logger.flush();
         if (mOpenCvCameraView != null) {
             mOpenCvCameraView.disableView();
         }
@@ -270,247 +264,42 @@ public class RecordGameActivity extends Activity implements CameraBridgeViewBase
         if (mOpenCvCameraView != null) {
             mOpenCvCameraView.disableView();
         }
+        logger.close();
     }
 
     public void onCameraViewStarted(int width, int height) {
-
+        pipeline.start();
     }
 
     public void onCameraViewStopped() {
-
+        pipeline.stop();
     }
 
     /**
-     * This method is called every time a camera frame is ready to be processed
+     * This method is called every time a camera frame is ready to be processed. The frame is only
+     * handed to the processing pipeline, so the preview's frame rate doesn't depend on how long
+     * the processing takes.
      */
     public Mat onCameraFrame(CameraBridgeViewBase.CvCameraViewFrame inputFrame) {
-
-        logger.startLoggingFrame();
-        logger.setCameraFrame(inputFrame.rgba().clone());
-
         cameraFrame = inputFrame.rgba();
-        Mat originalImage = inputFrame.rgba();
-
-        if (isCornerTrackingActive) {
-            for (int i = 0; i < 4; i++) {
-                cornerDetector[i].setImageIndex((int)logger.getFrameNumber());
-            }
-            updateCornerPositions(originalImage.clone());
-        }
-
-        if (state == STATE_LOOKING_FOR_BOARD) {
-            logger.addToLog("Board is not inside contour");
-            logger.addToLog("");
-            if (orthogonalBoard != null) {
-                orthogonalBoard.copyTo(originalImage.rowRange(0, 500).colRange(0, 500));
-            }
-            Drawer.drawLostBoardContour(originalImage, boardContour);
-            Drawer.drawBoard(originalImage, game.getLastBoard(), 0, 500, 400, game.getLastMove());
-            logger.log();
-            return originalImage;
-        }
-
-        // Throttling, processes twice per second
-        if (System.currentTimeMillis() - timeOfLastImageProcessing < 500) {
-            if (orthogonalBoard != null) {
-                orthogonalBoard.copyTo(originalImage.rowRange(0, 500).colRange(0, 500));
-            }
-            Drawer.drawBoardContour(originalImage, boardContour);
-            Drawer.drawBoard(originalImage, game.getLastBoard(), 0, 500, 400, game.getLastMove());
-            logger.log();
-            return originalImage;
-        }
-        else timeOfLastImageProcessing = System.currentTimeMillis();
-
-        orthogonalBoard = ImageUtils.transformOrthogonally(originalImage, boardPositionInImage);
-        logger.setOrtogonalBoardImage(orthogonalBoard.clone());
-
-        ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-        // TODO: Check the size of the orthogonal board image here
-        //       This affects the radius size when calculating the average color around an intersection
-        // int imageWidth = (int)orthogonalBoard.size().width;
-        // int imageHeight = (int)orthogonalBoard.size().height;
-        ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-        stoneDetector.setBoardImage(orthogonalBoard);
-
-        Board board = stoneDetector.detect(
-                game.getLastBoard(),
-                game.canNextMoveBe(Board.BLACK_STONE),
-                game.canNextMoveBe(Board.WHITE_STONE)
-        );
-
-//        snapshotAtual = stoneDetector.snapshot.toString();
-        logger.logCurrentBoardState();
-
-        if (!paused) {
-
-            if (lastDetectedBoard.equals(board)) {
-                timeSinceLastBoardChange += SystemClock.elapsedRealtime() - timeOfLastBoardDetection;
-                timeOfLastBoardDetection = SystemClock.elapsedRealtime();
-                if (timeSinceLastBoardChange > timeLimit && game.addMoveIfItIsValid(board)) {
-                    newMoveWasAdded();
-                }
-            } else {
-                timeSinceLastBoardChange = 0;
-                timeOfLastBoardDetection = SystemClock.elapsedRealtime();
-            }
-
-        }
-
-        lastDetectedBoard = board;
 
-        Drawer.drawBoardContour(originalImage, boardContour);
-        logger.setCameraImageWithBoardContour(originalImage.clone());
+        Frame frame = session.createFrame(cameraFrame.clone(), System.nanoTime());
+        frame.log.setCameraFrame(frame.image);
+        pipeline.submit(frame);
 
-        // Draw the orthogonal board on the screen
-        if (orthogonalBoard != null) {
-            orthogonalBoard.copyTo(originalImage.rowRange(0, 500).colRange(0, 500));
+        FrameOverlay currentOverlay = overlay;
+        if (currentOverlay != null) {
+            currentOverlay.draw(cameraFrame);
         }
-
-        if (paused) {
-            // When it's paused, draws stone detector's current output (useful for debugging)
-            Drawer.drawBoard(originalImage, board, 0, 500, 400, null);
-        }
-        else {
-            Drawer.drawBoard(originalImage, game.getLastBoard(), 0, 500, 400, game.getLastMove());
-        }
-
-        logger.log();
-
-        return originalImage;
-    }
-
-    private void updateCornerPositions(Mat image) {
-        Imgproc.cvtColor(image, image, Imgproc.COLOR_RGBA2BGR);
-
-        Corner[] possibleNewCorners = new Corner[4];
-        boolean wereAllCornersFound = true;
-        for (int i = 0; i < 4; i++) {
-            long start = System.currentTimeMillis();
-            possibleNewCorners[i] = cornerDetector[i].detectCornerIn(image);
-            long duration = System.currentTimeMillis() - start;
-            if (possibleNewCorners[i] != null) {
-                logger.addToLog(possibleNewCorners[i].toString());
-            } else {
-                logger.addToLog("Corner " + i + " was not found");
-            }
-            logger.addToLog("Time to process corner " + i + " = " + duration + "ms");
-            if (possibleNewCorners[i] == null) {
-                wereAllCornersFound = false;
-            }
-        }
-
-        Mat orthogonalBoardImage = wereAllCornersFound
-            ? ImageUtils.generateOrthogonalBoardImage(image, possibleNewCorners)
-            : null;
-
-        if (wereAllCornersFound && boardDetector.isBoardContainedIn(orthogonalBoardImage)) {
-            logger.addToLog("Board is inside contour");
-            int numberOfCornersThatMoved = getNumberOfCornersThatMoved(possibleNewCorners, boardCorners);
-            logger.addToLog("Number of corners that moved: " + numberOfCornersThatMoved);
-            int numberOfEmptyCornersThatMoved = getNumberOfEmptyCornersThatMoved(possibleNewCorners, boardCorners);
-            logger.addToLog("Number of empty corners that moved: " + numberOfEmptyCornersThatMoved);
-            double[] distanceToNewPoint = new double[4];
-            for (int i = 0; i < 4; i++) {
-                distanceToNewPoint[i] = possibleNewCorners[i].distanceTo(boardCorners[i]);
-                logger.addToLog("Distance to old corner point " + (i + 1) + " = " + distanceToNewPoint[i]);
-            }
-
-            for (int i = 0; i < 4; i++) {
-                if (numberOfCornersThatMoved < 4) {
-                    // Not all corners moved, so this is probably a corner adjustment
-                    // Update relative corner position of possible corners with stones
-                    if (possibleNewCorners[i].isStone) {
-                        if (!boardCorners[i].isStone) {
-                            possibleNewCorners[i].updateDisplacementVectorRelativeTo(boardCorners[i].position);
-                        } else {
-                            possibleNewCorners[i].updateDisplacementVectorRelativeTo(boardCorners[i].getRealCornerPosition());
-                        }
-                    }
-                } else if (possibleNewCorners[i].isStone) {
-                    // All corners moved together, so this is probably a board displacement and we
-                    // don't update the corners's relative position to the real corners
-                    possibleNewCorners[i].displacementToRealCorner = boardCorners[i].displacementToRealCorner;
-                }
-            }
-
-            Mat orthogonalBoardImage2 = ImageUtils.generateOrthogonalBoardImage(image, possibleNewCorners);
-            double similarity = lastValidOrtogonalBoardImage != null ? fingerprintMatching.calculateSimilatiryBetween(lastValidOrtogonalBoardImage, orthogonalBoardImage2) : -1;
-            logger.addToLog("Similarity between new orthogonal board image to last valid one = " + similarity);
-            logger.setOrtogonalBoardImage2(orthogonalBoardImage2);
-
-            if (logger.getFrameNumber() <= 3 || numberOfFramesWithDissimilarOrtogonalImages >= 5 || fingerprintMatching.areImagesSimilar(lastValidOrtogonalBoardImage, orthogonalBoardImage2)) {
-                // This condition should be time based and not frame based
-                if (numberOfFramesWithDissimilarOrtogonalImages >= 5) {
-                    logger.addToLog("Forcing orthogonal image to be similar");
-                } else {
-                    logger.addToLog("New orthogonal board image is similar to last valid one");
-                }
-                for (int i = 0; i < 4; i++) {
-                    if (!possibleNewCorners[i].isStone) {
-                        numberOfFramesWithoutStone[i]++;
-                    } else {
-                        numberOfFramesWithoutStone[i] = 0;
-                    }
-
-                    if (!boardCorners[i].isStone && !possibleNewCorners[i].isStone && numberOfCornersThatMoved < 3 && numberOfEmptyCornersThatMoved == 1) {
-                        // This means a single empty corner moved by itself, which is not possible. This addresses a wrong
-                        // corner detection in frame 70 of sequence 16.
-                        logger.addToLog("Corner " + i + " - This empty corner moved by itself");
-                        continue;
-                    }
-                    if (!possibleNewCorners[i].isStone && boardCorners[i].isStone && possibleNewCorners[i].distanceTo(boardCorners[i].getRealCornerPosition()) > MOVEMENT_THRESHOLD
-                            // This condition should be time based instead of frame based, something like 2 or 3 seconds or so
-                            && numberOfFramesWithoutStone[i] < 5
-                    ) {
-                        // If a corner was a stone and is not anymore, the new empty corner should match the real corner
-                        // position that the stone was on. This addresses a wrong corner detection in frame 74 of sequence 14.
-                        logger.addToLog("Corner " + i + " - This now empty corner is in a wrong position");
-                        logger.addToLog("Number of frames without stone = " + numberOfFramesWithoutStone[i]);
-                        continue;
-                    }
-                    boardCorners[i] = possibleNewCorners[i];
-                    cornerDetector[i].setCorner(possibleNewCorners[i]);
-                }
-                numberOfFramesWithDissimilarOrtogonalImages = 0;
-                lastValidOrtogonalBoardImage = orthogonalBoardImage2.clone();
-                logger.setLastValidOrtogonalBoardImage(lastValidOrtogonalBoardImage);
-            } else {
-                logger.addToLog("New orthogonal board image is NOT similar to last valid one");
-                numberOfFramesWithDissimilarOrtogonalImages++;
-            }
-
-            processBoardCorners();
-            state = STATE_RUNNING;
-        } else {
-            state = STATE_LOOKING_FOR_BOARD;
-            logger.addToLog("Board is NOT inside contour");
-            logger.addToLog("were all corners found = " + wereAllCornersFound);
-        }
-
-        logger.logCornerPositions(boardCorners);
+        return cameraFrame;
     }
 
-    private int getNumberOfCornersThatMoved(Corner[] possibleNewCorners, Corner[] corners) {
-        int numberOfCornersThatMoved = 0;
-        for (int i = 0; i < 4; i++) {
-            if (possibleNewCorners[i].distanceTo(corners[i]) > MOVEMENT_THRESHOLD) {
-                numberOfCornersThatMoved++;
-            }
-        }
-        return numberOfCornersThatMoved;
-    }
-
-    private int getNumberOfEmptyCornersThatMoved(Corner[] possibleNewCorners, Corner[] corners) {
-        int numberOfEmptyCornersThatMoved = 0;
-        for (int i = 0; i < 4; i++) {
-            if (!possibleNewCorners[i].isStone
-                    // && !corners[i].isStone
-                    && possibleNewCorners[i].distanceTo(corners[i]) > MOVEMENT_THRESHOLD) {
-                numberOfEmptyCornersThatMoved++;
-            }
-        }
-        return numberOfEmptyCornersThatMoved;
+    /**
+     * Publishes a new overlay to be drawn over the camera preview from the current state of the
+     * recording session.
+     */
+    private void publishOverlay() {
+        overlay = session.createOverlay();
     }
 
     public void onClick(View v) {
@@ -546,11 +335,12 @@ public class RecordGameActivity extends Activity implements CameraBridgeViewBase
     }
 
 	private void updatePauseButton() {
-        paused = !paused;
+        session.setPaused(!session.isPaused());
+        publishOverlay();
 		runOnUiThread(new Runnable() {
             @Override
             public void run() {
-                btnPause.setImageResource(paused ? R.drawable.play : R.drawable.pause);
+                btnPause.setImageResource(session.isPaused() ? R.drawable.play : R.drawable.pause);
             }
         });
 	}
@@ -562,10 +352,9 @@ public class RecordGameActivity extends Activity implements CameraBridgeViewBase
                 .setPositiveButton(R.string.yes, new DialogInterface.OnClickListener() {
                     @Override
                     public void onClick(DialogInterface dialog, int which) {
-                        Move removida = game.undoLastMove();
-                        timeSinceLastBoardChange = 0;
-                        timeOfLastBoardDetection = SystemClock.elapsedRealtime();
+                        Move removida = session.undoLastMove();
                         updateUndoButton();
+                        publishOverlay();
                         logger.addToLog("Undoing last move " + removida);
                     }
                 })
@@ -574,42 +363,15 @@ public class RecordGameActivity extends Activity implements CameraBridgeViewBase
     }
 
     private void takeSnapshot() {
-        logger.takeSnapshot(cameraFrame, orthogonalBoard);
+        logger.takeSnapshot(cameraFrame, overlay.getOrthogonalBoardImage());
         Toast.makeText(RecordGameActivity.this, R.string.toast_save_snapshot, Toast.LENGTH_SHORT).show();
     }
 
     private void rotate(int direction) {
         logger.addToLog("Rotated board in direction " + direction);
 
-        Corner[] rotatedBoardCorners = new Corner[4];
-        for (int i = 0; i < 4; i++) {
-            rotatedBoardCorners[i] = new Corner();
-        }
-
-        // Counter-clockwise
-        if (direction == -1) {
-            rotatedBoardCorners[0] = boardCorners[1];
-            rotatedBoardCorners[1] = boardCorners[2];
-            rotatedBoardCorners[2] = boardCorners[3];
-            rotatedBoardCorners[3] = boardCorners[0];
-        }
-        // Clockwise
-        else if (direction == 1) {
-            rotatedBoardCorners[0] = boardCorners[3];
-            rotatedBoardCorners[1] = boardCorners[0];
-            rotatedBoardCorners[2] = boardCorners[1];
-            rotatedBoardCorners[3] = boardCorners[2];
-        }
-
-        boardCorners = rotatedBoardCorners;
-        for (int i = 0; i < 4; i++) {
-            cornerDetector[i].setCorner(boardCorners[i]);
-        }
-        processBoardCorners();
-
-        lastValidOrtogonalBoardImage = ImageUtils.rotateImage(lastValidOrtogonalBoardImage, direction);
-        logger.setLastValidOrtogonalBoardImage(lastValidOrtogonalBoardImage);
-        game.rotate(direction);
+        session.rotate(direction);
+        publishOverlay();
     }
 
     private void areYouSureYouWantToFinishRecording() {
@@ -630,7 +392,7 @@ public class RecordGameActivity extends Activity implements CameraBridgeViewBase
      * Saves the game record and log in secondary storage.
      */
 	private void saveGameRecordOnDiskAndExit() {
-        saveGameRecordOnDisk();
+        session.finishRecording(fileHelper);
 
         Intent intent = new Intent(getApplicationContext(), InitialActivity.class);
         intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
@@ -638,7 +400,8 @@ public class RecordGameActivity extends Activity implements CameraBridgeViewBase
 	}
 
 	private void saveGameRecordOnDisk() {
-        if (fileHelper.saveGameFile(game)) {
+        boolean wasGameSaved = session.saveGame(fileHelper);
+        if (wasGameSaved) {
             // This has to run in the UI thread because the activity may be closed after the toast is shown
             runOnUiThread(new Runnable() {
                 public void run() {
@@ -666,10 +429,9 @@ public class RecordGameActivity extends Activity implements CameraBridgeViewBase
                 @Override
                 public void onClick(DialogInterface dialog, int which) {
                     Move manuallyAddedMove = processManualMove(input.getText().toString());
-                    Board newBoard = game.getLastBoard().generateNewBoardWith(manuallyAddedMove);
-                    if (game.addMoveIfItIsValid(newBoard)) {
+                    if (session.addMove(manuallyAddedMove)) {
                         newMoveWasAdded();
-                        game.updateNumberOfManualAdditions();
+                        saveGameRecordOnDisk();
                         logger.addToLog("Move " + manuallyAddedMove + " was manually added");
                     }
                 }
@@ -689,11 +451,15 @@ public class RecordGameActivity extends Activity implements CameraBridgeViewBase
 		return new Move(row, column, color);
 	}
 
+    /**
+     * Notifies the user that a move was added. Saving the game is up to the caller, which is the
+     * persistence stage for the moves that were detected.
+     */
     private void newMoveWasAdded() {
         moveCounter++;
         soundPool.play(beepId, 1, 1, 0, 0, 1);
-        saveGameRecordOnDisk();
         updateUndoButton();
+        publishOverlay();
     }
 
 	private void updateUndoButton() {
@@ -706,7 +472,8 @@ public class RecordGameActivity extends Activity implements CameraBridgeViewBase
 	}
 
 	private void toggleCornerTracking() {
-	    isCornerTrackingActive = !isCornerTrackingActive;
+	    final boolean isCornerTrackingActive = !session.isCornerTrackingActive();
+	    session.setCornerTrackingActive(isCornerTrackingActive);
         runOnUiThread(new Runnable() {
             @Override
             public void run() {
@@ -722,15 +489,13 @@ public class RecordGameActivity extends Activity implements CameraBridgeViewBase
 
 	private void resetCornersToTheirOriginalPositions() {
 	    logger.addToLog("Resetting corners to their original positions");
-	    for (int i = 0; i < 4; i++) {
-	        boardCorners[i].copy(originalBoardCorners[i]);
-        }
+        session.resetCornersToTheirOriginalPositions();
         Toast.makeText(
             RecordGameActivity.this,
             R.string.toast_restore_original_corner_positions,
             Toast.LENGTH_LONG
         ).show();
-        processBoardCorners();
+        publishOverlay();
     }
 
 }
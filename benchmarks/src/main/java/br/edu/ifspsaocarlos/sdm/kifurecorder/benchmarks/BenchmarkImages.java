@@ -0,0 +1,210 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.benchmarks;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Random;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Board;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Game;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Move;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.ImageUtils;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Corner;
+
+/**
+ * Images and games used by the benchmarks. Everything is generated from fixed
+ * seeds, so the results of different runs can be compared.
+ *
+ * The camera frames can also be frames recorded by the app (the "camera"
+ * images saved by the Logger). In this case, the benchmarks receive the path
+ * of the image and the position of the board corners in it, in the same
+ * format used by DetectBoardActivity: "x1,y1,x2,y2,x3,y3,x4,y4".
+ */
+public class BenchmarkImages {
+
+    public static final String SYNTHETIC = "synthetic";
+
+    public static final int FRAME_WIDTH = 1280;
+    public static final int FRAME_HEIGHT = 720;
+    // Position of the board corners in the synthetic camera frames, clockwise from the upper left
+    private static final int[] SYNTHETIC_BOARD_CORNERS = { 420, 120, 880, 130, 1010, 620, 290, 600 };
+
+    private static final long SEED = 42;
+    private static final int BOARD_MARGIN = 30;
+    private static final Scalar TABLE_COLOR = new Scalar(90, 90, 100, 255);
+    private static final Scalar BOARD_COLOR = new Scalar(220, 180, 110, 255);
+    private static final Scalar LINE_COLOR = new Scalar(30, 30, 30, 255);
+    private static final Scalar BLACK_STONE_COLOR = new Scalar(20, 20, 20, 255);
+    private static final Scalar WHITE_STONE_COLOR = new Scalar(235, 235, 235, 255);
+
+    private static boolean wasOpenCvLoaded = false;
+
+    public static synchronized void loadOpenCv() {
+        if (wasOpenCvLoaded) return;
+        nu.pattern.OpenCV.loadLocally();
+        wasOpenCvLoaded = true;
+    }
+
+    /**
+     * Returns a game with the specified number of valid moves, played at random positions.
+     */
+    public static Game generateGame(int boardDimension, int numberOfMoves) {
+        Game game = new Game(boardDimension, "Black", "White", "6.5");
+        Random random = new Random(SEED);
+        int color = Board.BLACK_STONE;
+        while (game.getNumberOfMoves() < numberOfMoves) {
+            Board newBoard = generateNextBoard(game, color, random);
+            if (newBoard == null) {
+                throw new IllegalStateException("Could not generate a game with " + numberOfMoves + " moves");
+            }
+            game.addMoveIfItIsValid(newBoard);
+            color = color == Board.BLACK_STONE ? Board.WHITE_STONE : Board.BLACK_STONE;
+        }
+        return game;
+    }
+
+    /**
+     * Returns a board with a valid move of the specified color added to the last board of the
+     * game, or null if no valid move was found.
+     */
+    public static Board generateNextBoard(Game game, int color, Random random) {
+        Board lastBoard = game.getLastBoard();
+        int dimension = lastBoard.getDimension();
+        for (int attempt = 0; attempt < 10 * dimension * dimension; attempt++) {
+            Move move = new Move(random.nextInt(dimension), random.nextInt(dimension), color);
+            Board newBoard = lastBoard.generateNewBoardWith(move);
+            if (newBoard != lastBoard && game.addMoveIfItIsValid(newBoard)) {
+                game.undoLastMove();
+                return newBoard;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a board position in the middle of a game, with about a third of the board filled.
+     */
+    public static Board generateBoard(int boardDimension) {
+        return generateGame(boardDimension, boardDimension * boardDimension / 3).getLastBoard();
+    }
+
+    /**
+     * Returns the orthogonal image of the board (500x500, RGBA), as produced by the warp stage.
+     */
+    public static Mat generateOrthogonalBoardImage(Board board) {
+        Mat image = new Mat(ImageUtils.ORTHOGONAL_BOARD_IMAGE_SIZE, ImageUtils.ORTHOGONAL_BOARD_IMAGE_SIZE, CvType.CV_8UC4, BOARD_COLOR);
+        drawBoard(image, board, 0, ImageUtils.ORTHOGONAL_BOARD_IMAGE_SIZE);
+        addNoise(image);
+        return image;
+    }
+
+    /**
+     * Returns a camera frame (RGBA) with the board seen in perspective, with its corners at the
+     * positions returned by getBoardCorners("").
+     */
+    public static Mat generateCameraFrame(Board board) {
+        int boardSize = ImageUtils.ORTHOGONAL_BOARD_IMAGE_SIZE;
+        int imageSize = boardSize + 2 * BOARD_MARGIN;
+        Mat boardImage = new Mat(imageSize, imageSize, CvType.CV_8UC4, BOARD_COLOR);
+        drawBoard(boardImage, board, BOARD_MARGIN, boardSize);
+
+        MatOfPoint2f gridCorners = new MatOfPoint2f(
+                new Point(BOARD_MARGIN, BOARD_MARGIN),
+                new Point(BOARD_MARGIN + boardSize, BOARD_MARGIN),
+                new Point(BOARD_MARGIN + boardSize, BOARD_MARGIN + boardSize),
+                new Point(BOARD_MARGIN, BOARD_MARGIN + boardSize));
+        Point[] cornerPoints = new Point[4];
+        for (int i = 0; i < 4; i++) {
+            cornerPoints[i] = new Point(SYNTHETIC_BOARD_CORNERS[2 * i], SYNTHETIC_BOARD_CORNERS[2 * i + 1]);
+        }
+        Mat transformationMatrix = Imgproc.getPerspectiveTransform(gridCorners, new MatOfPoint2f(cornerPoints));
+
+        Mat frame = new Mat(FRAME_HEIGHT, FRAME_WIDTH, CvType.CV_8UC4, TABLE_COLOR);
+        Imgproc.warpPerspective(boardImage, frame, transformationMatrix, frame.size(), Imgproc.INTER_LINEAR, Core.BORDER_TRANSPARENT, new Scalar(0));
+        addNoise(frame);
+        return frame;
+    }
+
+    /**
+     * Loads a camera frame recorded by the app and returns it in RGBA, like the frames given by
+     * the camera.
+     */
+    public static Mat loadCameraFrame(String path) {
+        Mat image = Imgcodecs.imread(path);
+        if (image.empty()) {
+            throw new IllegalArgumentException("Could not read image " + path);
+        }
+        Imgproc.cvtColor(image, image, Imgproc.COLOR_BGR2RGBA);
+        return image;
+    }
+
+    /**
+     * Returns the camera frame (RGBA) of a benchmark: a synthetic frame with the board if frame
+     * is SYNTHETIC, or the recorded frame in the path otherwise.
+     */
+    public static Mat getCameraFrame(String frame, Board board) {
+        return SYNTHETIC.equals(frame) ? generateCameraFrame(board) : loadCameraFrame(frame);
+    }
+
+    /**
+     * Returns the board corners of a benchmark frame: the corners of the synthetic frames if
+     * corners is empty, or the corners in the format "x1,y1,x2,y2,x3,y3,x4,y4" otherwise.
+     */
+    public static Corner[] getBoardCorners(String corners) {
+        int[] coordinates = SYNTHETIC_BOARD_CORNERS;
+        if (!corners.isEmpty()) {
+            String[] values = corners.split(",");
+            if (values.length != 8) {
+                throw new IllegalArgumentException("Expected 8 coordinates, got " + corners);
+            }
+            coordinates = new int[8];
+            for (int i = 0; i < 8; i++) {
+                coordinates[i] = Integer.parseInt(values[i].trim());
+            }
+        }
+
+        Corner[] boardCorners = new Corner[4];
+        for (int i = 0; i < 4; i++) {
+            boardCorners[i] = new Corner(coordinates[2 * i], coordinates[2 * i + 1]);
+        }
+        return boardCorners;
+    }
+
+    private static void drawBoard(Mat image, Board board, int offset, int size) {
+        int dimension = board.getDimension();
+        double spacing = (double) size / (dimension - 1);
+        int stoneRadius = (int) (spacing * 0.48);
+
+        for (int i = 0; i < dimension; i++) {
+            int position = offset + (int) Math.round(i * spacing);
+            Imgproc.line(image, new Point(offset, position), new Point(offset + size, position), LINE_COLOR, 2);
+            Imgproc.line(image, new Point(position, offset), new Point(position, offset + size), LINE_COLOR, 2);
+        }
+
+        for (int row = 0; row < dimension; row++) {
+            for (int column = 0; column < dimension; column++) {
+                int stone = board.getPosition(row, column);
+                if (stone == Board.EMPTY) continue;
+                Point center = new Point(offset + column * spacing, offset + row * spacing);
+                Imgproc.circle(image, center, stoneRadius, stone == Board.BLACK_STONE ? BLACK_STONE_COLOR : WHITE_STONE_COLOR, -1);
+            }
+        }
+    }
+
+    private static void addNoise(Mat image) {
+        Mat signedImage = new Mat();
+        image.convertTo(signedImage, CvType.CV_16SC4);
+        Mat noise = new Mat(image.size(), CvType.CV_16SC4);
+        Core.setRNGSeed((int) SEED);
+        Core.randn(noise, 0, 6);
+        Core.add(signedImage, noise, signedImage);
+        signedImage.convertTo(image, CvType.CV_8UC4);
+    }
+
+}
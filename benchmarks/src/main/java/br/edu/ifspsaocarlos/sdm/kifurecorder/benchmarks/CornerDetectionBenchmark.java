@@ -0,0 +1,100 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.benchmarks;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.RotatedRect;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Corner;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.CornerDetector;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.HarrisCornerDetector;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.ellipseDetector.SecondEllipseDetector;
+
+/**
+ * Tracking of a single board corner, done four times for every frame, and the
+ * two detectors it uses on the region of interest around the corner.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CornerDetectionBenchmark {
+
+    @Param({"0", "2"})
+    public int cornerIndex;
+
+    // BenchmarkImages.SYNTHETIC or the path of a camera frame recorded by the app
+    @Param({BenchmarkImages.SYNTHETIC})
+    public String frame;
+
+    // Board corners in the recorded frame, "x1,y1,x2,y2,x3,y3,x4,y4"
+    @Param({""})
+    public String corners;
+
+    private Mat cameraFrame;
+    private Mat image;
+    private Mat regionOfInterest;
+    private CornerDetector cornerDetector;
+    private HarrisCornerDetector harrisCornerDetector;
+    private SecondEllipseDetector ellipseDetector;
+
+    @Setup
+    public void setUp() {
+        BenchmarkImages.loadOpenCv();
+        // The corner tracking stage works on the camera frame (RGBA), and the detectors of a
+        // region of interest on BGR images
+        cameraFrame = BenchmarkImages.getCameraFrame(frame, BenchmarkImages.generateBoard(19));
+        image = new Mat();
+        Imgproc.cvtColor(cameraFrame, image, Imgproc.COLOR_RGBA2BGR);
+
+        Corner corner = BenchmarkImages.getBoardCorners(corners)[cornerIndex];
+        cornerDetector = new CornerDetector();
+        cornerDetector.setCornerIndex(cornerIndex + 1);
+        cornerDetector.setCorner(corner);
+
+        int radius = CornerDetector.RADIUS_OF_REGION_OF_INTEREST;
+        int x = Math.max(corner.getX() - radius, 0);
+        int y = Math.max(corner.getY() - radius, 0);
+        regionOfInterest = new Mat(image, new Rect(x, y, Math.min(2 * radius, image.cols() - x), Math.min(2 * radius, image.rows() - y)));
+
+        harrisCornerDetector = new HarrisCornerDetector();
+        ellipseDetector = new SecondEllipseDetector();
+    }
+
+    @Benchmark
+    public Corner detectCorner() {
+        return cornerDetector.detectCornerIn(image);
+    }
+
+    @Benchmark
+    public Corner detectCornerInCameraFrame() {
+        return cornerDetector.detectCornerIn(cameraFrame);
+    }
+
+    @Benchmark
+    public List<Corner> detectHarrisCorners() {
+        return harrisCornerDetector.detectCandidateCornersIn(regionOfInterest);
+    }
+
+    @Benchmark
+    public List<RotatedRect> detectEllipses() {
+        return ellipseDetector.detectEllipsesIn(regionOfInterest);
+    }
+
+}
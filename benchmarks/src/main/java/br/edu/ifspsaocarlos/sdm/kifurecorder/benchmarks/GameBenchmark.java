@@ -0,0 +1,67 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Board;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Game;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Move;
+
+/**
+ * Game rules on 19x19 games of different lengths: the generation of the board
+ * after a move, done by the stone detector and by the game, and the addition
+ * of a detected board to the game, which checks it against all the previous
+ * boards (superko).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameBenchmark {
+
+    @Param({"50", "150", "300"})
+    public int numberOfMoves;
+
+    private Game game;
+    private Board lastBoard;
+    private Move nextMove;
+    private Board nextBoard;
+
+    @Setup
+    public void setUp() {
+        game = BenchmarkImages.generateGame(19, numberOfMoves);
+        lastBoard = game.getLastBoard();
+        int nextColor = game.getLastMove().color == Board.BLACK_STONE ? Board.WHITE_STONE : Board.BLACK_STONE;
+        nextBoard = BenchmarkImages.generateNextBoard(game, nextColor, new Random(numberOfMoves));
+        nextMove = nextBoard.getDifferenceTo(lastBoard);
+    }
+
+    @Benchmark
+    public Board generateNewBoardWith() {
+        return lastBoard.generateNewBoardWith(nextMove);
+    }
+
+    /**
+     * Adds the next move and undoes it, so every invocation sees a game of the same length.
+     */
+    @Benchmark
+    public Move addMoveIfItIsValid() {
+        game.addMoveIfItIsValid(nextBoard);
+        return game.undoLastMove();
+    }
+
+}
@@ -0,0 +1,81 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.benchmarks;
+
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Board;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.ImageUtils;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Corner;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.similarityCalculator.FingerprintMatching;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.similarityCalculator.ImageFingerprint;
+
+/**
+ * Whole image operations of the corner tracking stage: the orthogonal board
+ * image generated from the new corners and its comparison with the last valid
+ * one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageBenchmark {
+
+    // BenchmarkImages.SYNTHETIC or the path of a camera frame recorded by the app
+    @Param({BenchmarkImages.SYNTHETIC})
+    public String frame;
+
+    // Board corners in the recorded frame, "x1,y1,x2,y2,x3,y3,x4,y4"
+    @Param({""})
+    public String corners;
+
+    private Mat cameraFrame;
+    private Corner[] boardCorners;
+    private Mat orthogonalBoardImage;
+    private Mat lastValidOrthogonalBoardImage;
+    private FingerprintMatching fingerprintMatching;
+    private ImageFingerprint lastValidOrthogonalBoardImageFingerprint;
+
+    @Setup
+    public void setUp() {
+        BenchmarkImages.loadOpenCv();
+        Board board = BenchmarkImages.generateBoard(19);
+        cameraFrame = BenchmarkImages.getCameraFrame(frame, board);
+        boardCorners = BenchmarkImages.getBoardCorners(corners);
+        orthogonalBoardImage = ImageUtils.generateOrthogonalBoardImage(cameraFrame, boardCorners);
+        lastValidOrthogonalBoardImage = BenchmarkImages.SYNTHETIC.equals(frame)
+            ? BenchmarkImages.generateOrthogonalBoardImage(board)
+            : orthogonalBoardImage.clone();
+        fingerprintMatching = new FingerprintMatching();
+        lastValidOrthogonalBoardImageFingerprint = fingerprintMatching.calculateFingerprintOf(lastValidOrthogonalBoardImage);
+    }
+
+    @Benchmark
+    public Mat generateOrthogonalBoardImage() {
+        return ImageUtils.generateOrthogonalBoardImage(cameraFrame, boardCorners);
+    }
+
+    @Benchmark
+    public double calculateSimilarity() {
+        return fingerprintMatching.calculateSimilatiryBetween(lastValidOrthogonalBoardImage, orthogonalBoardImage);
+    }
+
+    @Benchmark
+    public double calculateSimilarityToFingerprint() {
+        return fingerprintMatching.calculateSimilatiryBetween(lastValidOrthogonalBoardImageFingerprint, fingerprintMatching.calculateFingerprintOf(orthogonalBoardImage));
+    }
+
+}
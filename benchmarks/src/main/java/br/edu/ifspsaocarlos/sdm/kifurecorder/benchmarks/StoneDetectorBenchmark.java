@@ -0,0 +1,98 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.benchmarks;
+
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Board;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Game;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.HomographyCache;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.ImageUtils;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Corner;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.stoneDetector.StoneDetector;
+
+/**
+ * Stone detection on the orthogonal board image, done for every frame that
+ * goes through the warp stage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StoneDetectorBenchmark {
+
+    @Param({"9", "13", "19"})
+    public int boardDimension;
+
+    // BenchmarkImages.SYNTHETIC or the path of a camera frame recorded by the app
+    @Param({BenchmarkImages.SYNTHETIC})
+    public String frame;
+
+    // Board corners in the recorded frame, "x1,y1,x2,y2,x3,y3,x4,y4"
+    @Param({""})
+    public String corners;
+
+    private StoneDetector stoneDetector;
+    private StoneDetector stoneDetectorWithoutWarp;
+    private Board lastBoard;
+    private Mat cameraFrame;
+    private Corner[] boardCorners;
+
+    @Setup
+    public void setUp() {
+        BenchmarkImages.loadOpenCv();
+        Game game = BenchmarkImages.generateGame(boardDimension, boardDimension * boardDimension / 3);
+        Board currentBoard = game.getLastBoard();
+        // The detector looks for the move that was just played
+        game.undoLastMove();
+        lastBoard = game.getLastBoard();
+
+        Mat boardImage = BenchmarkImages.SYNTHETIC.equals(frame)
+            ? BenchmarkImages.generateOrthogonalBoardImage(currentBoard)
+            : ImageUtils.generateOrthogonalBoardImage(BenchmarkImages.loadCameraFrame(frame), BenchmarkImages.getBoardCorners(corners));
+
+        stoneDetector = new StoneDetector();
+        stoneDetector.setBoardDimension(boardDimension);
+        stoneDetector.setBoardImage(boardImage);
+
+        // Samples the intersections straight from the camera frame
+        cameraFrame = BenchmarkImages.getCameraFrame(frame, currentBoard);
+        boardCorners = BenchmarkImages.getBoardCorners(corners);
+        stoneDetectorWithoutWarp = new StoneDetector();
+        stoneDetectorWithoutWarp.setBoardDimension(boardDimension);
+        stoneDetectorWithoutWarp.setCameraImage(cameraFrame, new HomographyCache().getTransformationMatrix(boardCorners));
+    }
+
+    @Benchmark
+    public Board detect() {
+        return stoneDetector.detect(lastBoard, true, true);
+    }
+
+    @Benchmark
+    public Board warpAndDetect() {
+        Mat boardImage = ImageUtils.generateOrthogonalBoardImage(cameraFrame, boardCorners);
+        stoneDetector.setBoardImage(boardImage);
+        Board board = stoneDetector.detect(lastBoard, true, true);
+        boardImage.release();
+        return board;
+    }
+
+    @Benchmark
+    public Board detectWithoutWarp() {
+        return stoneDetectorWithoutWarp.detect(lastBoard, true, true);
+    }
+
+}
@@ -0,0 +1,571 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.models;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Represents a board state.
+ *
+ * The stones are stored in two bitsets, one for each color, where the bit of the intersection
+ * (row, column) is row * dimension + column. A 19x19 board fits in 6 longs per color.
+ *
+ * The board also keeps the Zobrist hashes of its four rotations, updated each time a stone is
+ * put or removed, so boards can be looked up without comparing them stone by stone.
+ *
+ * The groups of stones (chains) are kept in a union-find structure, built the first time a move
+ * is added to the board and updated by generateNewBoardWith() for the new boards. Each chain
+ * counts its pseudo-liberties, the number of empty positions adjacent to each of its stones
+ * (an empty position adjacent to two stones of the chain is counted twice). This count is zero
+ * only when the chain has no liberties, which is all that is needed to detect captures and
+ * suicides.
+ *
+ * The last board of a game is read by more than one thread, so the chains are built in local
+ * arrays and published together, and the chains of a board are only changed by play(), before
+ * the new board is returned.
+ */
+public class Board implements Serializable {
+
+    private static final long serialVersionUID = -8817104013221451022L;
+
+    /**
+     * Boards are serialized in the same form used when the stones were stored in an Integer[][],
+     * so games saved by previous versions of the app can still be read, and vice versa.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("dimension", int.class),
+        new ObjectStreamField("board", Integer[][].class)
+    };
+
+    public final static int EMPTY = 0;
+    public final static int BLACK_STONE = 1;
+    public final static int WHITE_STONE = 2;
+
+    private int dimension;
+    private long[] blackStones;
+    private long[] whiteStones;
+    // Zobrist hash of the board rotated clockwise 0, 1, 2 and 3 times
+    private transient long[] zobristHashes;
+    // It's null until the chains are needed
+    private transient volatile Chains chains;
+
+    public Board(int dimension) {
+        this.dimension = dimension;
+        int numberOfWords = (dimension * dimension + 63) / 64;
+        blackStones = new long[numberOfWords];
+        whiteStones = new long[numberOfWords];
+        zobristHashes = new long[4];
+    }
+
+    public Board(Board board) {
+        this.dimension = board.dimension;
+        this.blackStones = board.blackStones.clone();
+        this.whiteStones = board.whiteStones.clone();
+        this.zobristHashes = board.zobristHashes.clone();
+        Chains boardChains = board.chains;
+        if (boardChains != null) {
+            this.chains = new Chains(boardChains.parents.clone(), boardChains.nextStones.clone());
+        }
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public void putStone(int linha, int coluna, int pedra) {
+        if (pedra != BLACK_STONE && pedra != WHITE_STONE) {
+            throw new RuntimeException("Invalid stone!");
+        }
+        if (isAValidPosition(linha, coluna)) {
+            throw new RuntimeException("Invalid position!");
+        }
+        if (getPosition(linha, coluna) != EMPTY) {
+			throw new RuntimeException("There is already a stone in that position!");
+		}
+        setPosition(linha, coluna, pedra);
+        // The chains are built again if they are needed
+        chains = null;
+    }
+
+    private boolean isAValidPosition(int row, int column) {
+        return row < 0 || column < 0 || row >= dimension || column >= dimension;
+    }
+
+    public int getPosition(int row, int column) {
+        return getPositionColor(row * dimension + column);
+    }
+
+    private void setPosition(int row, int column, int stone) {
+        int previousStone = getPosition(row, column);
+        if (previousStone == stone) return;
+        if (previousStone != EMPTY) updateZobristHashes(row, column, previousStone);
+        if (stone != EMPTY) updateZobristHashes(row, column, stone);
+
+        int index = row * dimension + column;
+        int word = index >>> 6;
+        long bit = 1L << index;
+        blackStones[word] &= ~bit;
+        whiteStones[word] &= ~bit;
+        if (stone == BLACK_STONE) blackStones[word] |= bit;
+        else if (stone == WHITE_STONE) whiteStones[word] |= bit;
+    }
+
+    /**
+     * Adds or removes (it's the same operation) a stone from the hashes of the four rotations.
+     * Rotating the board clockwise moves the stone at (row, column) to (column, dimension - 1 - row).
+     */
+    private void updateZobristHashes(int row, int column, int stone) {
+        for (int rotation = 0; rotation < 4; ++rotation) {
+            zobristHashes[rotation] ^= getZobristKey(row, column, stone);
+            int rotatedRow = column;
+            column = dimension - 1 - row;
+            row = rotatedRow;
+        }
+    }
+
+    /**
+     * Returns the random number that represents a stone of this color on this position. The
+     * numbers are generated by mixing the position and the color (SplitMix64), so they don't
+     * depend on the board dimension and don't need to be stored.
+     */
+    private static long getZobristKey(int row, int column, int stone) {
+        long key = ((long) stone << 32 | (long) row << 16 | column) * 0x9E3779B97F4A7C15L;
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
+    }
+
+    /**
+     * Returns the Zobrist hash of this board. Boards with the same stones in the same positions
+     * have the same hash.
+     */
+    public long getZobristHash() {
+        return zobristHashes[0];
+    }
+
+    /**
+     * Returns a hash that is the same for this board and its rotations, so it can be used to look
+     * for boards that are equal according to equals().
+     */
+    public long getSymmetricZobristHash() {
+        long hash = zobristHashes[0];
+        for (int rotation = 1; rotation < 4; ++rotation) {
+            hash = Math.min(hash, zobristHashes[rotation]);
+        }
+        return hash;
+    }
+
+    public String toString() {
+        StringBuilder output = new StringBuilder();
+
+        for (int i = 0; i < dimension; ++i) {
+            for (int j = 0; j < dimension; ++j) {
+                int stone = getPosition(i, j);
+                if (stone == EMPTY) output.append('.');
+                else if (stone == BLACK_STONE) output.append('P');
+                else if (stone == WHITE_STONE) output.append('B');
+            }
+            output.append(System.getProperty("line.separator"));
+        }
+
+        return output.toString();
+    }
+
+    /**
+     * Returns a new board that corresponds to the current board rotated clockwise (direction = 1)
+     * or counter-clockwise (direction = -1)
+     */
+    public Board rotate(int direction) {
+        if (direction == -1) return rotateCounterClockwise();
+        else if (direction == 1) return rotateClockwise();
+        throw new RuntimeException("Invalid rotation direction!");
+    }
+
+    private Board rotateClockwise() {
+        Board rotatedBoard = new Board(dimension);
+        for (int i = 0; i < dimension; ++i) {
+            for (int j = 0; j < dimension; ++j) {
+                int stone = getPosition(dimension - 1 - j, i);
+                if (stone != Board.EMPTY) {
+                    rotatedBoard.setPosition(i, j, stone);
+                }
+            }
+        }
+        return rotatedBoard;
+    }
+
+    private Board rotateCounterClockwise() {
+        Board rotatedBoard = new Board(dimension);
+        for (int i = 0; i < dimension; ++i) {
+            for (int j = 0; j < dimension; ++j) {
+                int stone = getPosition(j, dimension - 1 - i);
+                if (stone != Board.EMPTY) {
+                    rotatedBoard.setPosition(i, j, stone);
+                }
+            }
+        }
+        return rotatedBoard;
+    }
+
+    public boolean isIdenticalTo(Board otherBoard) {
+        return dimension == otherBoard.dimension
+            && zobristHashes[0] == otherBoard.zobristHashes[0]
+            && Arrays.equals(blackStones, otherBoard.blackStones)
+            && Arrays.equals(whiteStones, otherBoard.whiteStones);
+    }
+
+    /**
+     * Checks if two board are equal, including if one is a rotation of the other.
+     */
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof Board)) return false;
+        Board otherBoard = (Board)object;
+        if (dimension != otherBoard.dimension) return false;
+        if (this.isIdenticalTo(otherBoard)) return true;
+        if (getSymmetricZobristHash() != otherBoard.getSymmetricZobristHash()) return false;
+
+        Board rotation1 = otherBoard.rotateClockwise();
+        if (this.isIdenticalTo(rotation1)) return true;
+        Board rotation2 = rotation1.rotateClockwise();
+        if (this.isIdenticalTo(rotation2)) return true;
+        Board rotation3 = rotation2.rotateClockwise();
+        return this.isIdenticalTo(rotation3);
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = getSymmetricZobristHash();
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Returns the different move between this board and the previous one. If it's not possible to
+     * reach the current board from the previous one, returns null.
+     */
+    public Move getDifferenceTo(Board previousBoard) {
+        int numberOfBlackStonesBefore = previousBoard.getNumberOfStonesOfColor(Board.BLACK_STONE);
+        int numberOfWhiteStonesBefore = previousBoard.getNumberOfStonesOfColor(Board.WHITE_STONE);
+        int numberOfBlackStonesAfter = getNumberOfStonesOfColor(Board.BLACK_STONE);
+        int numberOfWhiteStonesAfter = getNumberOfStonesOfColor(Board.WHITE_STONE);
+        int blackStonesDifference = numberOfBlackStonesAfter - numberOfBlackStonesBefore;
+        int whiteStonesDifference = numberOfWhiteStonesAfter - numberOfWhiteStonesBefore;
+        int moveColor;
+
+        if (blackStonesDifference == 1) moveColor = Board.BLACK_STONE;
+        else if (whiteStonesDifference == 1) moveColor = Board.WHITE_STONE;
+        else return null;
+        Move movePlayed = getDifferentMoveBetweenCurrentBoardAnd(previousBoard, moveColor);
+
+        if (previousBoard.generateNewBoardWith(movePlayed).isIdenticalTo(this)) {
+            return movePlayed;
+        }
+        return null;
+    }
+
+    private int getNumberOfStonesOfColor(int cor) {
+        long[] stones = getStonesOfColor(cor);
+        if (stones == null) return 0;
+        int numberOfStones = 0;
+        for (long word : stones) {
+            numberOfStones += Long.bitCount(word);
+        }
+        return numberOfStones;
+    }
+
+    private long[] getStonesOfColor(int color) {
+        if (color == BLACK_STONE) return blackStones;
+        if (color == WHITE_STONE) return whiteStones;
+        return null;
+    }
+
+    /**
+     * Returns the first different stone found between the two boards of the specified color.
+     */
+    private Move getDifferentMoveBetweenCurrentBoardAnd(Board previousBoard, int color) {
+        if (dimension != previousBoard.dimension) return null;
+        long[] stones = getStonesOfColor(color);
+        long[] previousStones = previousBoard.getStonesOfColor(color);
+        for (int word = 0; word < stones.length; ++word) {
+            long newStones = stones[word] & ~previousStones[word];
+            if (newStones != 0) {
+                int index = word * 64 + Long.numberOfTrailingZeros(newStones);
+                return new Move(index / dimension, index % dimension, color);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a new board that corresponds to the current board added with the move passed as
+     * parameter. If the move is not valid, returns the current board.
+     */
+	public Board generateNewBoardWith(Move move) {
+        if (move == null || isAValidPosition(move.row, move.column) || getPosition(move.row, move.column) != EMPTY) return this;
+        if (move.color != BLACK_STONE && move.color != WHITE_STONE) return this;
+
+        buildChains();
+        Board newBoard = new Board(this);
+        if (!newBoard.play(move.row * dimension + move.column, move.color)) return this;
+        return newBoard;
+	}
+
+    /**
+     * Puts a stone on an empty position, updating the chains and removing the captured stones.
+     * Returns false if the move is a suicide, in which case the board must be discarded.
+     */
+    private boolean play(int position, int color) {
+        short[] chainParents = chains.parents;
+        int[] neighbors = new int[4];
+        int numberOfNeighbors = getNeighbors(position, neighbors);
+
+        int pseudoLiberties = 0;
+        for (int i = 0; i < numberOfNeighbors; ++i) {
+            int neighbor = neighbors[i];
+            if (isEmpty(neighbor)) {
+                pseudoLiberties++;
+            } else {
+                // The position of the move was a liberty of the neighbor
+                chainParents[findChain(neighbor)]++;
+            }
+        }
+
+        setPosition(position / dimension, position % dimension, color);
+        chainParents[position] = (short) (-1 - pseudoLiberties);
+        chains.nextStones[position] = (short) position;
+
+        for (int i = 0; i < numberOfNeighbors; ++i) {
+            int neighbor = neighbors[i];
+            if (getPositionColor(neighbor) == color) {
+                joinChains(position, neighbor);
+            }
+        }
+
+        for (int i = 0; i < numberOfNeighbors; ++i) {
+            int neighbor = neighbors[i];
+            int neighborColor = getPositionColor(neighbor);
+            if (neighborColor != EMPTY && neighborColor != color && getPseudoLiberties(findChain(neighbor)) == 0) {
+                removeChain(neighbor);
+            }
+        }
+
+        return getPseudoLiberties(findChain(position)) != 0;
+    }
+
+    private boolean isEmpty(int position) {
+        long bit = 1L << position;
+        return ((blackStones[position >>> 6] | whiteStones[position >>> 6]) & bit) == 0;
+    }
+
+    private int getPositionColor(int position) {
+        long bit = 1L << position;
+        if ((blackStones[position >>> 6] & bit) != 0) return BLACK_STONE;
+        if ((whiteStones[position >>> 6] & bit) != 0) return WHITE_STONE;
+        return EMPTY;
+    }
+
+    /**
+     * Stores the positions adjacent to this position in neighbors and returns how many there are.
+     */
+    private int getNeighbors(int position, int[] neighbors) {
+        int row = position / dimension;
+        int column = position % dimension;
+        int numberOfNeighbors = 0;
+        if (row > 0) neighbors[numberOfNeighbors++] = position - dimension;
+        if (row < dimension - 1) neighbors[numberOfNeighbors++] = position + dimension;
+        if (column > 0) neighbors[numberOfNeighbors++] = position - 1;
+        if (column < dimension - 1) neighbors[numberOfNeighbors++] = position + 1;
+        return numberOfNeighbors;
+    }
+
+    /**
+     * Returns the root of the chain of the stone in this position.
+     */
+    private int findChain(int position) {
+        short[] chainParents = chains.parents;
+        int root = position;
+        while (chainParents[root] >= 0) {
+            root = chainParents[root];
+        }
+        // Path compression
+        while (chainParents[position] >= 0) {
+            int parent = chainParents[position];
+            chainParents[position] = (short) root;
+            position = parent;
+        }
+        return root;
+    }
+
+    private int getPseudoLiberties(int root) {
+        return -1 - chains.parents[root];
+    }
+
+    private void joinChains(int position1, int position2) {
+        int root1 = findChain(position1);
+        int root2 = findChain(position2);
+        if (root1 == root2) return;
+
+        short[] chainParents = chains.parents;
+        short[] chainNextStones = chains.nextStones;
+        chainParents[root1] = (short) (-1 - getPseudoLiberties(root1) - getPseudoLiberties(root2));
+        chainParents[root2] = (short) root1;
+        // Splices the two circular lists of stones
+        short next = chainNextStones[root1];
+        chainNextStones[root1] = chainNextStones[root2];
+        chainNextStones[root2] = next;
+    }
+
+    /**
+     * Removes all stones of the chain of this position from the board. The removed stones become
+     * liberties of the chains adjacent to them.
+     */
+    private void removeChain(int position) {
+        short[] chainParents = chains.parents;
+        short[] chainNextStones = chains.nextStones;
+        int stone = position;
+        do {
+            setPosition(stone / dimension, stone % dimension, EMPTY);
+            stone = chainNextStones[stone];
+        } while (stone != position);
+
+        int[] neighbors = new int[4];
+        do {
+            int numberOfNeighbors = getNeighbors(stone, neighbors);
+            for (int i = 0; i < numberOfNeighbors; ++i) {
+                if (!isEmpty(neighbors[i])) {
+                    chainParents[findChain(neighbors[i])]--;
+                }
+            }
+            stone = chainNextStones[stone];
+        } while (stone != position);
+    }
+
+    /**
+     * Builds the chains of the stones of this board, if they were not built yet. Uses an explicit
+     * stack instead of recursion, so big chains don't overflow the call stack.
+     *
+     * Two threads may build the chains of the same board at the same time. Each one builds its own
+     * arrays, and both get the same result.
+     */
+    private Chains buildChains() {
+        Chains builtChains = chains;
+        if (builtChains != null) return builtChains;
+
+        int numberOfPositions = dimension * dimension;
+        short[] parents = new short[numberOfPositions];
+        short[] nextStones = new short[numberOfPositions];
+        boolean[] visitedPositions = new boolean[numberOfPositions];
+
+        int[] stack = new int[numberOfPositions];
+        int[] neighbors = new int[4];
+        for (int root = 0; root < numberOfPositions; ++root) {
+            int color = getPositionColor(root);
+            if (color == EMPTY || visitedPositions[root]) continue;
+
+            int pseudoLiberties = 0;
+            visitedPositions[root] = true;
+            nextStones[root] = (short) root;
+            int stackSize = 0;
+            stack[stackSize++] = root;
+            while (stackSize > 0) {
+                int stone = stack[--stackSize];
+                int numberOfNeighbors = getNeighbors(stone, neighbors);
+                for (int i = 0; i < numberOfNeighbors; ++i) {
+                    int neighbor = neighbors[i];
+                    int neighborColor = getPositionColor(neighbor);
+                    if (neighborColor == EMPTY) {
+                        pseudoLiberties++;
+                    } else if (neighborColor == color && !visitedPositions[neighbor]) {
+                        visitedPositions[neighbor] = true;
+                        parents[neighbor] = (short) root;
+                        nextStones[neighbor] = nextStones[root];
+                        nextStones[root] = (short) neighbor;
+                        stack[stackSize++] = neighbor;
+                    }
+                }
+            }
+            parents[root] = (short) (-1 - pseudoLiberties);
+        }
+
+        builtChains = new Chains(parents, nextStones);
+        chains = builtChains;
+        return builtChains;
+    }
+
+    /**
+     * Returns the group that is at a certain position on the board or null if there is no group.
+     */
+    public Group getGroupAt(int row, int column) {
+        if (isAValidPosition(row, column) || getPosition(row, column) == Board.EMPTY) return null;
+
+        short[] chainNextStones = buildChains().nextStones;
+        int color = getPosition(row, column);
+        Group group = new Group(color);
+        int[] neighbors = new int[4];
+        int position = row * dimension + column;
+        int stone = position;
+        do {
+            group.addPosition(new Position(stone / dimension, stone % dimension));
+            int numberOfNeighbors = getNeighbors(stone, neighbors);
+            for (int i = 0; i < numberOfNeighbors; ++i) {
+                if (isEmpty(neighbors[i])) {
+                    group.addLiberty(new Position(neighbors[i] / dimension, neighbors[i] % dimension));
+                }
+            }
+            stone = chainNextStones[stone];
+        } while (stone != position);
+        return group;
+    }
+
+    /**
+     * The union-find structure of the chains. Both arrays are kept in the same object so a thread
+     * never sees the parents of one build with the next stones of another, or without them.
+     */
+    private static class Chains {
+        // Parent of each stone. The root of a chain stores -1 - (number of pseudo-liberties of the
+        // chain) instead. The values of empty positions are not used.
+        final short[] parents;
+        // Next stone of the same chain, forming a circular list with all the stones of the chain
+        final short[] nextStones;
+
+        Chains(short[] parents, short[] nextStones) {
+            this.parents = parents;
+            this.nextStones = nextStones;
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        Integer[][] board = new Integer[dimension][dimension];
+        for (int i = 0; i < dimension; ++i) {
+            for (int j = 0; j < dimension; ++j) {
+                board[i][j] = getPosition(i, j);
+            }
+        }
+
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("dimension", dimension);
+        fields.put("board", board);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        dimension = fields.get("dimension", 0);
+        Integer[][] board = (Integer[][]) fields.get("board", null);
+
+        int numberOfWords = (dimension * dimension + 63) / 64;
+        blackStones = new long[numberOfWords];
+        whiteStones = new long[numberOfWords];
+        zobristHashes = new long[4];
+        if (board == null) return;
+        for (int i = 0; i < dimension; ++i) {
+            for (int j = 0; j < dimension; ++j) {
+                if (board[i][j] != null) setPosition(i, j, board[i][j]);
+            }
+        }
+    }
+
+}
@@ -1,27 +1,34 @@
 package br.edu.ifspsaocarlos.sdm.kifurecorder.models;
 
-import android.util.Log;
-
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-
-import br.edu.ifspsaocarlos.sdm.kifurecorder.BuildConfig;
+import java.util.Map;
 
 /**
  * Represents a complete game, with the sequence of boards and moves that were made.
  */
 public class Game implements Serializable {
 
+    // Same value the serialization computed before it was declared, so older games can be read
+    private static final long serialVersionUID = -9179866270705118094L;
+
+    // Version of the application that recorded the game, written in the SGF file
+    private static String applicationVersion = "";
+
     private String blackPlayer;
     private String whitePlayer;
     private String komi;
     private int boardDimension;
     private List<Move> moves;
     private List<Board> boards;
+    // Indexes of the boards of the game by their symmetric Zobrist hash, built when it's needed
+    private transient Map<Long, List<Integer>> boardsByHash;
 
     // Attribute to measure the system's precision
     private int numberOfUndoes;
@@ -48,10 +55,15 @@ public class Game implements Serializable {
         komi = game.komi;
         moves = game.moves; // I think there's no problem just copying the reference here
         boards = game.boards;
+        boardsByHash = null;
         numberOfUndoes = game.numberOfUndoes;
         numberOfManualAdditions = game.numberOfManualAdditions;
     }
 
+    public static void setApplicationVersion(String version) {
+        applicationVersion = version;
+    }
+
     public int getBoardDimension() {
         return boardDimension;
     }
@@ -64,6 +76,14 @@ public class Game implements Serializable {
         return whitePlayer;
     }
 
+    public String getKomi() {
+        return komi;
+    }
+
+    public List<Move> getMoves() {
+        return Collections.unmodifiableList(moves);
+    }
+
     public boolean addMoveIfItIsValid(Board board) {
         Move playedMove = board.getDifferenceTo(getLastBoard());
 
@@ -71,20 +91,80 @@ public class Game implements Serializable {
             return false;
         }
 
-        boards.add(board);
-        moves.add(playedMove);
-        Log.i("KifuRecorder", "Adding board " + board + " (move " + playedMove.sgf() + ") to the game.");
+        add(board, playedMove);
         return true;
     }
 
+    /**
+     * Adds a move to the game if it's valid, without logging it. Used to rebuild a game from its
+     * moves.
+     */
+    public boolean replayMove(Move move) {
+        Board board = getLastBoard().generateNewBoardWith(move);
+        if (board == getLastBoard() || repeatsPreviousState(board) || !canNextMoveBe(move.color)) {
+            return false;
+        }
+        add(board, move);
+        return true;
+    }
+
+    private void add(Board board, Move move) {
+        boards.add(board);
+        addToIndex(board, boards.size() - 1);
+        moves.add(move);
+    }
+
     /**
      * Returns true if newBoard repeats any previous boards of the game (superko rule).
      */
     private boolean repeatsPreviousState(Board newBoard) {
-        for (Board board : boards) {
-            if (board.equals(newBoard)) return true;
+        return findBoard(newBoard) != -1;
+    }
+
+    /**
+     * Returns the index of the first board of the game that is equal to this board, including
+     * rotations, or -1 if there is no such board. Index 0 is the empty board before the first
+     * move.
+     */
+    public int findBoard(Board board) {
+        List<Integer> candidates = getBoardsByHash().get(board.getSymmetricZobristHash());
+        if (candidates == null) return -1;
+        // The boards are only compared if their hashes are the same
+        for (int index : candidates) {
+            if (boards.get(index).equals(board)) return index;
         }
-        return false;
+        return -1;
+    }
+
+    /**
+     * The index is not serialized, so it's built again the first time it's needed.
+     */
+    private Map<Long, List<Integer>> getBoardsByHash() {
+        if (boardsByHash == null) {
+            boardsByHash = new HashMap<>();
+            for (int i = 0; i < boards.size(); ++i) {
+                addToIndex(boards.get(i), i);
+            }
+        }
+        return boardsByHash;
+    }
+
+    private void addToIndex(Board board, int index) {
+        if (boardsByHash == null) return;
+        List<Integer> indexes = boardsByHash.get(board.getSymmetricZobristHash());
+        if (indexes == null) {
+            indexes = new ArrayList<>(1);
+            boardsByHash.put(board.getSymmetricZobristHash(), indexes);
+        }
+        indexes.add(index);
+    }
+
+    private void removeFromIndex(Board board, int index) {
+        if (boardsByHash == null) return;
+        List<Integer> indexes = boardsByHash.get(board.getSymmetricZobristHash());
+        if (indexes == null) return;
+        indexes.remove(Integer.valueOf(index));
+        if (indexes.isEmpty()) boardsByHash.remove(board.getSymmetricZobristHash());
     }
 
     public boolean canNextMoveBe(int color) {
@@ -131,7 +211,8 @@ public class Game implements Serializable {
      */
     public Move undoLastMove() {
         if (moves.isEmpty()) return null;
-        boards.remove(boards.size() - 1);
+        Board lastBoard = boards.remove(boards.size() - 1);
+        removeFromIndex(lastBoard, boards.size());
         Move lastMove = moves.remove(moves.size() - 1);
         numberOfUndoes++;
         return lastMove;
@@ -145,6 +226,22 @@ public class Game implements Serializable {
         numberOfManualAdditions++;
     }
 
+    public int getNumberOfUndoes() {
+        return numberOfUndoes;
+    }
+
+    public int getNumberOfManualAdditions() {
+        return numberOfManualAdditions;
+    }
+
+    /**
+     * Restores the precision statistics of a game rebuilt from its moves.
+     */
+    public void setPrecisionStatistics(int numberOfUndoes, int numberOfManualAdditions) {
+        this.numberOfUndoes = numberOfUndoes;
+        this.numberOfManualAdditions = numberOfManualAdditions;
+    }
+
     /**
      * Rotates all boards of this game clockwise (direction = 1) or counter-clockwise
      * (direction = -1).
@@ -166,6 +263,7 @@ public class Game implements Serializable {
 
         boards = rotatedBoards;
         moves = rotatedMoves;
+        boardsByHash = null;
     }
 
     // SGF methods should be extracted to a SgfBuilder class that receives a Game as parameter
@@ -177,7 +275,6 @@ public class Game implements Serializable {
         StringBuilder sgf = new StringBuilder();
         writeHeader(sgf);
         for (Move move : moves) {
-            Log.i("KifuRecorder", "Building SGF - move " + move.sgf());
             sgf.append(move.sgf());
         }
         sgf.append(")");
@@ -195,7 +292,7 @@ public class Game implements Serializable {
         writeProperty(sgf, "CA", "UTF-8");
         writeProperty(sgf, "SZ", "" + getLastBoard().getDimension());
         writeProperty(sgf, "DT", date);
-        writeProperty(sgf, "AP", "Kifu Recorder v" + BuildConfig.VERSION_NAME);
+        writeProperty(sgf, "AP", "Kifu Recorder v" + applicationVersion);
         writeProperty(sgf, "KM", komi);
         writeProperty(sgf, "PW", whitePlayer);
         writeProperty(sgf, "PB", blackPlayer);
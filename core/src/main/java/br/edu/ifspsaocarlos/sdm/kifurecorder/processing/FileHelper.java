@@ -0,0 +1,237 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Game;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Corner;
+
+public class FileHelper {
+
+    private static final String JOURNAL_EXTENSION = ".journal";
+
+    private String gameName;
+    private File gameRecordFolder;
+    private File gameRecordLogFolder;
+    private File gameFile;
+    // Names of the images saved in the log folder by this helper
+    private final Set<String> imageFilenames = new HashSet<>();
+
+    /**
+     * @param game Game being recorded, used to name the files
+     * @param gameRecordFolder Folder where the game records are saved (on Android, the
+     *                         "kifu_recorder" folder of the external storage)
+     */
+    public FileHelper(Game game, File gameRecordFolder) {
+        gameName = generateGameName(game);
+        this.gameRecordFolder = gameRecordFolder;
+        gameRecordLogFolder = new File(gameRecordFolder, gameName);
+        gameFile = getGameFile();
+        createGameRecordFolder();
+    }
+
+    private String generateGameName(Game game) {
+        // http://stackoverflow.com/questions/10203924/displaying-date-in-a-double-digit-format
+        SimpleDateFormat sdf =  new SimpleDateFormat("yyyy-MM-dd_HHmm");
+        String timestamp = sdf.format(new Date(Calendar.getInstance().getTimeInMillis()));
+
+        return timestamp + "_" + game.getWhitePlayer() + "-" + game.getBlackPlayer();
+    }
+
+    public void createGameRecordFolder() {
+        if (!gameRecordLogFolder.exists() && !gameRecordLogFolder.mkdirs()) {
+            // TODO: Throw an exception
+//            Toast.makeText(RecordGameActivity.this, "ERRO: Diretório " + gameRecordLogFolder.toString() + " não criado, verifique as configurações de armazenamento de seu dispositivo.", Toast.LENGTH_LONG).show();
+            System.err.println("Folder " + gameRecordLogFolder.toString() + " could not be created, check your device's available space and storage configuration.");
+        }
+    }
+
+    private File getGameFile() {
+        File file = new File(gameRecordFolder, generateFilename(0, "", "sgf"));
+        int counter = 1;
+
+        while (file.exists()) {
+            String newFilename = generateFilename(counter, "", "sgf");
+            file = new File(gameRecordFolder, newFilename);
+            counter++;
+        }
+
+        return file;
+    }
+
+    public File getFile(String name, String extension) {
+        File file = new File(gameRecordLogFolder, generateFilename(0, name, extension));
+        int counter = 1;
+
+        while (file.exists()) {
+            String newFilename = generateFilename(counter, name, extension);
+            file = new File(gameRecordLogFolder, newFilename);
+            counter++;
+        }
+
+        return file;
+    }
+
+    /**
+     * Same as getFile(), but for the images of the log, which are saved too often to check if the
+     * file exists before each one. As the log folder is created for each game, it's enough to
+     * check the names of the images that were already saved.
+     */
+    private File getImageFile(String name, String extension) {
+        int counter = 0;
+        String filename = generateFilename(counter, name, extension);
+        synchronized (imageFilenames) {
+            while (!imageFilenames.add(filename)) {
+                counter++;
+                filename = generateFilename(counter, name, extension);
+            }
+        }
+        return new File(gameRecordLogFolder, filename);
+    }
+
+    private String generateFilename(int repeatedNameCounter, String filename, String extension) {
+        String counter = repeatedNameCounter > 0 ?
+            "(" + repeatedNameCounter + ")" : "";
+
+        StringBuilder string = new StringBuilder();
+        string.append(gameName);
+        if (!filename.isEmpty()) {
+            string.append("_").append(filename);
+        }
+        string.append("_").append(counter).append(".").append(extension);
+        return string.toString();
+    }
+
+    /**
+     * The journal of the game is saved in the same folder as the SGF file, with the same name
+     * followed by ".journal".
+     */
+    public File getJournalFile() {
+        return new File(gameRecordFolder, gameFile.getName() + JOURNAL_EXTENSION);
+    }
+
+    /**
+     * Writes the SGF files of the games whose journals were left in the game record folder,
+     * because the app was closed before the recording was finished, and deletes the journals.
+     *
+     * @return the number of games recovered
+     */
+    public static int recoverUnfinishedGames(File gameRecordFolder) {
+        File[] files = gameRecordFolder.listFiles();
+        if (files == null) return 0;
+
+        int numberOfRecoveredGames = 0;
+        for (File journal : files) {
+            String journalName = journal.getName();
+            if (!journalName.endsWith(JOURNAL_EXTENSION)) continue;
+            try {
+                Game game = GameJournal.replay(journal);
+                if (game == null) {
+                    System.err.println("Journal " + journalName + " is not valid.");
+                    continue;
+                }
+                File gameFile = new File(gameRecordFolder, journalName.substring(0, journalName.length() - JOURNAL_EXTENSION.length()));
+                if (writeTextFile(gameFile, game.sgf()) && journal.delete()) {
+                    System.out.println("Game recovered from journal: " + gameFile.getName());
+                    numberOfRecoveredGames++;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return numberOfRecoveredGames;
+    }
+
+    public File getTempFile() {
+        return new File(gameRecordFolder, "temp_file");
+    }
+
+    public boolean saveGameFile(Game game) {
+        String gameContent = game.sgf();
+
+        if (isStorageWritable() && writeTextFile(gameFile, gameContent)) {
+            System.out.println("Game saved: " + gameFile.getName());
+            return true;
+        }
+        return false;
+//
+//        else {
+//            // TODO: Throw exception
+////            Toast.makeText(RecordGameActivity.this, "ERRO: Armazenamento externo nao disponivel.", Toast.LENGTH_LONG).show();
+////            Log.e("KifuRecorder", "Armazenamento externo não disponível.");
+//            return false
+//        }
+    }
+
+    private static boolean writeTextFile(File file, String content) {
+        try {
+            FileOutputStream fos = new FileOutputStream(file, false);
+            fos.write(content.getBytes());
+            fos.flush();
+            fos.close();
+            return true;
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    private boolean isStorageWritable() {
+        return gameRecordFolder.isDirectory() && gameRecordFolder.canWrite();
+    }
+
+    /**
+     * Stores the game and the corners in a session snapshot. The snapshot is encoded right away
+     * and written to the temporary file in a background thread.
+     */
+    public void storeGameTemporarily(Game game, Corner[] cantosDoTabuleiro) {
+        if (isStorageWritable()) {
+            SessionSnapshot.writeInBackground(SessionSnapshot.encode(game, cantosDoTabuleiro), getTempFile());
+        }
+        else {
+            System.err.println("Storage not available to store temporary game state.");
+        }
+    }
+
+    public void restoreGameStoredTemporarily(Game game, Corner[] boardCorners) {
+        File arquivo = getTempFile();
+        try {
+            SessionSnapshot.decode(SessionSnapshot.read(arquivo), game, boardCorners);
+            System.out.println("Partida recuperada.");
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void writePngImage(Mat image, int colorConversionCode, String filename) {
+        Mat correctColorFormatImage = new Mat();
+        Imgproc.cvtColor(image, correctColorFormatImage, colorConversionCode);
+        Imgcodecs.imwrite(getFile(filename, "png").getAbsolutePath(), correctColorFormatImage);
+    }
+
+    public void writePngImage(Mat image, String filename) {
+        Imgcodecs.imwrite(getFile(filename, "png").getAbsolutePath(), image);
+    }
+
+    /**
+     * Writes an image of the log, encoded with the format of the extension and the parameters
+     * of Imgcodecs.imwrite().
+     */
+    public boolean writeImage(Mat image, String filename, String extension, MatOfInt parameters) {
+        return Imgcodecs.imwrite(getImageFile(filename, extension).getAbsolutePath(), image, parameters);
+    }
+
+}
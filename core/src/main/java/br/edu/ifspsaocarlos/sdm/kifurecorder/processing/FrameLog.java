@@ -0,0 +1,91 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+import org.opencv.core.Mat;
+
+/**
+ * Log text and debug images of a single camera frame. Frames are processed
+ * concurrently by the processing pipeline, so each one keeps its own log until
+ * it is handed to the Logger to be written.
+ */
+public class FrameLog {
+
+    private final long frameNumber;
+    private final long startProcessingTime;
+    private final StringBuilder logText;
+
+    private Mat cameraFrame;
+    private Mat cameraImageWithBoardContour;
+    private Mat ortogonalBoardImage;
+    private Mat ortogonalBoardImage2;
+    private Mat lastValidOrtogonalBoardImage;
+
+    public FrameLog(long frameNumber) {
+        this.frameNumber = frameNumber;
+        startProcessingTime = System.currentTimeMillis();
+        logText = new StringBuilder();
+        addToLog("===============================");
+        addToLog("Frame " + frameNumber);
+        addToLog();
+    }
+
+    public long getFrameNumber() {
+        return frameNumber;
+    }
+
+    public long getStartProcessingTime() {
+        return startProcessingTime;
+    }
+
+    public String getLogText() {
+        return logText.toString();
+    }
+
+    public void addToLog() {
+        logText.append("\n");
+    }
+
+    public void addToLog(String text) {
+        logText.append(text).append("\n");
+    }
+
+    public Mat getCameraFrame() {
+        return cameraFrame;
+    }
+
+    public void setCameraFrame(Mat cameraFrame) {
+        this.cameraFrame = cameraFrame;
+    }
+
+    public Mat getCameraImageWithBoardContour() {
+        return cameraImageWithBoardContour;
+    }
+
+    public void setCameraImageWithBoardContour(Mat image) {
+        this.cameraImageWithBoardContour = image;
+    }
+
+    public Mat getOrtogonalBoardImage() {
+        return ortogonalBoardImage;
+    }
+
+    public void setOrtogonalBoardImage(Mat image) {
+        this.ortogonalBoardImage = image;
+    }
+
+    public Mat getOrtogonalBoardImage2() {
+        return ortogonalBoardImage2;
+    }
+
+    public void setOrtogonalBoardImage2(Mat image) {
+        this.ortogonalBoardImage2 = image;
+    }
+
+    public Mat getLastValidOrtogonalBoardImage() {
+        return lastValidOrtogonalBoardImage;
+    }
+
+    public void setLastValidOrtogonalBoardImage(Mat image) {
+        this.lastValidOrtogonalBoardImage = image;
+    }
+
+}
@@ -0,0 +1,224 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Game;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Move;
+
+/**
+ * Append-only record of the changes made to a game while it is being recorded.
+ * Each change is appended to the end of the file, so saving the game after a
+ * move takes the same time at the beginning and at the end of the game. The
+ * SGF file is only written when the recording is finished or, if the app is
+ * closed before that, when the journal is replayed by FileHelper the next time
+ * the app starts.
+ *
+ * Journal format, one record per line:
+ *
+ * KIFU_RECORDER_JOURNAL 1
+ * SZ 19
+ * KM 6.5
+ * PB Black player name
+ * PW White player name
+ * ST 2 1          Undoes and manual additions made before the journal was started
+ * M 1 3 15        Move detected by the app (color, row, column)
+ * A 2 15 3        Move added by the user (color, row, column)
+ * U               Undo of the last move
+ * R -1            Rotation of the board (direction)
+ *
+ * A line that doesn't end with a line break was not completely written and is
+ * ignored when the journal is replayed.
+ */
+public class GameJournal {
+
+    private static final String HEADER = "KIFU_RECORDER_JOURNAL 1";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private FileChannel channel;
+
+    public GameJournal(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Starts the journal with the current state of the game, discarding what was written to it
+     * before.
+     */
+    public synchronized void start(Game game) {
+        close();
+        StringBuilder records = new StringBuilder();
+        records.append(HEADER).append('\n');
+        records.append("SZ ").append(game.getBoardDimension()).append('\n');
+        records.append("KM ").append(singleLine(game.getKomi())).append('\n');
+        records.append("PB ").append(singleLine(game.getBlackPlayer())).append('\n');
+        records.append("PW ").append(singleLine(game.getWhitePlayer())).append('\n');
+        // The moves of the game are written as detected moves, so the statistics are kept apart
+        records.append("ST ").append(game.getNumberOfUndoes()).append(' ')
+            .append(game.getNumberOfManualAdditions()).append('\n');
+        for (Move move : game.getMoves()) {
+            appendMoveRecord(records, "M", move);
+        }
+
+        try {
+            channel = new FileOutputStream(file, false).getChannel();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        write(records.toString());
+    }
+
+    public void appendMove(Move move) {
+        StringBuilder record = new StringBuilder();
+        appendMoveRecord(record, "M", move);
+        write(record.toString());
+    }
+
+    public void appendManuallyAddedMove(Move move) {
+        StringBuilder record = new StringBuilder();
+        appendMoveRecord(record, "A", move);
+        write(record.toString());
+    }
+
+    public void appendUndo() {
+        write("U\n");
+    }
+
+    public void appendRotation(int direction) {
+        write("R " + direction + "\n");
+    }
+
+    /**
+     * Makes sure everything appended to the journal is on the storage, and not only in the
+     * caches of the operating system.
+     */
+    public synchronized void sync() {
+        if (channel == null) return;
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void close() {
+        if (channel == null) return;
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+    }
+
+    /**
+     * Closes and deletes the journal, after the game was saved in the SGF file.
+     */
+    public synchronized void delete() {
+        close();
+        if (file.exists() && !file.delete()) {
+            System.err.println("Journal " + file.getName() + " could not be deleted.");
+        }
+    }
+
+    private synchronized void write(String records) {
+        if (channel == null) return;
+        ByteBuffer buffer = ByteBuffer.wrap(records.getBytes(UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void appendMoveRecord(StringBuilder records, String type, Move move) {
+        records.append(type).append(' ')
+            .append(move.color).append(' ')
+            .append(move.row).append(' ')
+            .append(move.column).append('\n');
+    }
+
+    private static String singleLine(String text) {
+        return text == null ? "" : text.replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * Rebuilds the game recorded in a journal. Returns null if the journal is not valid.
+     */
+    public static Game replay(File file) throws IOException {
+        String content = new String(readFile(file), UTF_8);
+        String[] lines = content.split("\n", -1);
+        // The last element is what comes after the last line break
+        int numberOfCompleteLines = lines.length - 1;
+        if (numberOfCompleteLines < 5 || !lines[0].equals(HEADER)) return null;
+
+        int boardDimension;
+        try {
+            boardDimension = Integer.parseInt(getValue(lines[1], "SZ"));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String komi = getValue(lines[2], "KM");
+        String blackPlayer = getValue(lines[3], "PB");
+        String whitePlayer = getValue(lines[4], "PW");
+        if (komi == null || blackPlayer == null || whitePlayer == null) return null;
+
+        Game game = new Game(boardDimension, blackPlayer, whitePlayer, komi);
+        for (int i = 5; i < numberOfCompleteLines; i++) {
+            String[] record = lines[i].split(" ");
+            try {
+                if (record[0].equals("M") || record[0].equals("A")) {
+                    Move move = new Move(Integer.parseInt(record[2]), Integer.parseInt(record[3]), Integer.parseInt(record[1]));
+                    if (game.replayMove(move) && record[0].equals("A")) {
+                        game.updateNumberOfManualAdditions();
+                    }
+                } else if (record[0].equals("U")) {
+                    game.undoLastMove();
+                } else if (record[0].equals("R")) {
+                    game.rotate(Integer.parseInt(record[1]));
+                } else if (record[0].equals("ST")) {
+                    game.setPrecisionStatistics(Integer.parseInt(record[1]), Integer.parseInt(record[2]));
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Invalid journal record: " + lines[i]);
+            }
+        }
+        return game;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream((int) file.length());
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int numberOfBytes;
+            while ((numberOfBytes = fis.read(buffer)) != -1) {
+                content.write(buffer, 0, numberOfBytes);
+            }
+        } finally {
+            fis.close();
+        }
+        return content.toByteArray();
+    }
+
+    private static String getValue(String line, String property) {
+        if (!line.startsWith(property + " ")) return null;
+        return line.substring(property.length() + 1);
+    }
+
+}
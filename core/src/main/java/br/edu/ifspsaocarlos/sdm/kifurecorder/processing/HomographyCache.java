@@ -0,0 +1,163 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Corner;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Ponto;
+
+/**
+ * Generates the orthogonal board image of the camera frames, reusing the
+ * perspective transform while the corners of the board don't move.
+ *
+ * The transform is recalculated only when a corner moves more than
+ * CORNER_TOLERANCE from the position used to calculate it, and the matrices of
+ * the corner positions are allocated only once. The last warped image is kept
+ * too: warping the same camera frame again with the same transform returns the
+ * same orthogonal board image, so a frame is warped only once for the
+ * similarity check of the corner tracking and for the stone detection.
+ *
+ * A new orthogonal board image is allocated for each warp, because the image is
+ * still used by the other stages of the pipeline, the overlay and the log
+ * after the next frame is warped. The images returned must not be modified.
+ */
+public class HomographyCache {
+
+    // The corners are detected in whole pixels, so the transform is recalculated whenever a
+    // corner moves
+    private static final double CORNER_TOLERANCE = 0.5;
+
+    private final Mat orthogonalImageCorners = new Mat(4, 1, CvType.CV_32FC2);
+    private final Mat boardPositionInImage = new Mat(4, 1, CvType.CV_32FC2);
+    private final double[] cornerCoordinates = new double[8];
+    private Mat transformationMatrix;
+    // Incremented each time the transform is recalculated
+    private int transformationVersion = 0;
+
+    private Mat lastImage;
+    private int lastImageTransformationVersion;
+    private Mat lastOrthogonalBoardImage;
+
+    public HomographyCache() {
+        int size = ImageUtils.ORTHOGONAL_BOARD_IMAGE_SIZE;
+        orthogonalImageCorners.put(0, 0,
+                0, 0,
+                size, 0,
+                size, size,
+                0, size);
+    }
+
+    /**
+     * Returns the orthogonal board image of the camera frame, with the board limited by the real
+     * positions of the corners.
+     */
+    public Mat warp(Mat image, Corner[] corners) {
+        return warp(image, getCoordinatesOf(corners));
+    }
+
+    /**
+     * Returns the orthogonal board image of the camera frame, with the board limited by the
+     * positions in boardPositionInImage (4x1, CV_32FC2).
+     */
+    public Mat warp(Mat image, Mat boardPositionInImage) {
+        return warp(image, getCoordinatesOf(boardPositionInImage));
+    }
+
+    /**
+     * Returns the orthogonal board image of the camera frame if it was already warped with the
+     * same transform, or null otherwise.
+     */
+    public synchronized Mat getWarpedImage(Mat image, Mat boardPositionInImage) {
+        updateTransformationMatrix(getCoordinatesOf(boardPositionInImage));
+        if (image == lastImage && lastImageTransformationVersion == transformationVersion) {
+            return lastOrthogonalBoardImage;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the perspective transform from the camera frame to the orthogonal board image. The
+     * same matrix is returned while the corners don't move, and it is never modified.
+     */
+    public synchronized Mat getTransformationMatrix(Mat boardPositionInImage) {
+        updateTransformationMatrix(getCoordinatesOf(boardPositionInImage));
+        return transformationMatrix;
+    }
+
+    public synchronized Mat getTransformationMatrix(Corner[] corners) {
+        updateTransformationMatrix(getCoordinatesOf(corners));
+        return transformationMatrix;
+    }
+
+    private static double[] getCoordinatesOf(Corner[] corners) {
+        double[] coordinates = new double[8];
+        for (int i = 0; i < 4; i++) {
+            Ponto realCornerPosition = corners[i].getRealCornerPosition();
+            coordinates[2 * i] = realCornerPosition.x;
+            coordinates[2 * i + 1] = realCornerPosition.y;
+        }
+        return coordinates;
+    }
+
+    private static double[] getCoordinatesOf(Mat boardPositionInImage) {
+        float[] positions = new float[8];
+        boardPositionInImage.get(0, 0, positions);
+        double[] coordinates = new double[8];
+        for (int i = 0; i < 8; i++) {
+            coordinates[i] = positions[i];
+        }
+        return coordinates;
+    }
+
+    private Mat warp(Mat image, double[] coordinates) {
+        Mat transformation;
+        int version;
+        synchronized (this) {
+            updateTransformationMatrix(coordinates);
+            if (image == lastImage && lastImageTransformationVersion == transformationVersion) {
+                return lastOrthogonalBoardImage;
+            }
+            transformation = transformationMatrix;
+            version = transformationVersion;
+        }
+
+        // The warp is done outside the lock, so the corner tracking and the warp stages can warp
+        // different frames at the same time
+        int size = ImageUtils.ORTHOGONAL_BOARD_IMAGE_SIZE;
+        Mat orthogonalBoardImage = new Mat(size, size, image.type());
+        Imgproc.warpPerspective(image, orthogonalBoardImage, transformation, new Size(size, size));
+
+        synchronized (this) {
+            if (version == transformationVersion) {
+                lastImage = image;
+                lastImageTransformationVersion = version;
+                lastOrthogonalBoardImage = orthogonalBoardImage;
+            }
+        }
+        return orthogonalBoardImage;
+    }
+
+    private void updateTransformationMatrix(double[] coordinates) {
+        if (transformationMatrix != null && !hasAnyCornerMoved(coordinates)) return;
+
+        System.arraycopy(coordinates, 0, cornerCoordinates, 0, 8);
+        boardPositionInImage.put(0, 0, cornerCoordinates);
+        // The previous matrix is not released, because it may still be in use by a warp
+        transformationMatrix = Imgproc.getPerspectiveTransform(boardPositionInImage, orthogonalImageCorners);
+        transformationVersion++;
+    }
+
+    private boolean hasAnyCornerMoved(double[] coordinates) {
+        for (int i = 0; i < 8; i += 2) {
+            double dx = coordinates[i] - cornerCoordinates[i];
+            double dy = coordinates[i + 1] - cornerCoordinates[i + 1];
+            if (dx * dx + dy * dy > CORNER_TOLERANCE * CORNER_TOLERANCE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,247 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Saves the debug images of the log in background threads.
+ *
+ * The image is copied to a buffer taken from a pool when dump() is called, so
+ * the caller can release or reuse it right away. The color conversion and the
+ * encoding are done by the worker threads.
+ *
+ * The images are grouped in categories (camera, orthogonal board, ...). Each
+ * category has a sampling rate (only one in every N images of the category is
+ * saved) and a limit of images waiting to be saved. When the limit is reached,
+ * the new images of the category are dropped, so a category that produces
+ * images on every frame doesn't delay the others.
+ */
+public class ImageDumper {
+
+    public static final int PNG = 0;
+    public static final int JPEG = 1;
+    public static final int WEBP = 2;
+
+    private static final int DEFAULT_NUMBER_OF_WORKERS = 2;
+    private static final int DEFAULT_QUEUE_LIMIT = 2;
+    private static final int MAXIMUM_NUMBER_OF_POOLED_BUFFERS = 8;
+
+    private final FileHelper fileHelper;
+    private final Thread[] workers;
+    private final ArrayDeque<ImageToDump> queue = new ArrayDeque<>();
+    private final ArrayDeque<Mat> bufferPool = new ArrayDeque<>();
+    private final Map<String, Category> categories = new HashMap<>();
+    private boolean isClosed = false;
+
+    private int format = PNG;
+    // PNG compression level (0 to 9) or JPEG and WebP quality (0 to 100)
+    private int quality = 1;
+
+    public ImageDumper(FileHelper fileHelper) {
+        this(fileHelper, DEFAULT_NUMBER_OF_WORKERS);
+    }
+
+    public ImageDumper(FileHelper fileHelper, int numberOfWorkers) {
+        this.fileHelper = fileHelper;
+        workers = new Thread[numberOfWorkers];
+    }
+
+    /**
+     * Sets the format of the images saved from now on. The quality is the compression level for
+     * PNG (0 to 9, where 0 is the fastest) and the quality for JPEG and WebP (0 to 100).
+     */
+    public synchronized void setFormat(int format, int quality) {
+        if (format != PNG && format != JPEG && format != WEBP) {
+            throw new IllegalArgumentException("Invalid image format: " + format);
+        }
+        this.format = format;
+        this.quality = quality;
+    }
+
+    /**
+     * Saves only one in every samplingRate images of the category.
+     */
+    public synchronized void setSamplingRate(String category, int samplingRate) {
+        getCategory(category).samplingRate = Math.max(samplingRate, 1);
+    }
+
+    /**
+     * Sets how many images of the category can be waiting to be saved.
+     */
+    public synchronized void setQueueLimit(String category, int queueLimit) {
+        getCategory(category).queueLimit = Math.max(queueLimit, 1);
+    }
+
+    public synchronized long getNumberOfDroppedImages(String category) {
+        return getCategory(category).numberOfDroppedImages;
+    }
+
+    /**
+     * Copies the image and schedules it to be saved with the specified file name, after being
+     * converted with the color conversion code (for example Imgproc.COLOR_RGBA2BGR, or -1 for no
+     * conversion). Returns false if the image was skipped by the sampling or dropped.
+     */
+    public boolean dump(Mat image, int colorConversionCode, String category, String filename) {
+        Mat buffer;
+        synchronized (this) {
+            if (isClosed) return false;
+            Category imageCategory = getCategory(category);
+            if (imageCategory.numberOfRequests++ % imageCategory.samplingRate != 0) return false;
+            if (imageCategory.numberOfQueuedImages >= imageCategory.queueLimit) {
+                imageCategory.numberOfDroppedImages++;
+                return false;
+            }
+            imageCategory.numberOfQueuedImages++;
+            buffer = bufferPool.isEmpty() ? new Mat() : bufferPool.pollFirst();
+        }
+
+        image.copyTo(buffer);
+
+        synchronized (this) {
+            queue.addLast(new ImageToDump(buffer, colorConversionCode, category, filename, format, quality));
+            startWorkersIfNeeded();
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Saves the images that are waiting and stops the worker threads.
+     */
+    public void close() {
+        synchronized (this) {
+            isClosed = true;
+            notifyAll();
+        }
+        for (Thread worker : workers) {
+            if (worker == null) continue;
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            for (Mat buffer : bufferPool) {
+                buffer.release();
+            }
+            bufferPool.clear();
+        }
+    }
+
+    private Category getCategory(String name) {
+        Category category = categories.get(name);
+        if (category == null) {
+            category = new Category();
+            categories.put(name, category);
+        }
+        return category;
+    }
+
+    private void startWorkersIfNeeded() {
+        if (workers.length == 0 || workers[0] != null) return;
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(new Worker(), "KifuRecorder-image-dumper-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    private synchronized ImageToDump takeImage() throws InterruptedException {
+        while (queue.isEmpty() && !isClosed) {
+            wait();
+        }
+        return queue.pollFirst();
+    }
+
+    private synchronized void finishImage(ImageToDump image) {
+        getCategory(image.category).numberOfQueuedImages--;
+        if (bufferPool.size() < MAXIMUM_NUMBER_OF_POOLED_BUFFERS) {
+            bufferPool.addLast(image.buffer);
+        } else {
+            image.buffer.release();
+        }
+    }
+
+    private static class Category {
+        int samplingRate = 1;
+        int queueLimit = DEFAULT_QUEUE_LIMIT;
+        long numberOfRequests = 0;
+        int numberOfQueuedImages = 0;
+        long numberOfDroppedImages = 0;
+    }
+
+    private static class ImageToDump {
+        final Mat buffer;
+        final int colorConversionCode;
+        final String category;
+        final String filename;
+        final int format;
+        final int quality;
+
+        ImageToDump(Mat buffer, int colorConversionCode, String category, String filename, int format, int quality) {
+            this.buffer = buffer;
+            this.colorConversionCode = colorConversionCode;
+            this.category = category;
+            this.filename = filename;
+            this.format = format;
+            this.quality = quality;
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final Mat convertedImage = new Mat();
+
+        @Override
+        public void run() {
+            while (true) {
+                ImageToDump image;
+                try {
+                    image = takeImage();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (image == null) break;
+
+                try {
+                    save(image);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    finishImage(image);
+                }
+            }
+            convertedImage.release();
+        }
+
+        private void save(ImageToDump image) {
+            Mat imageToSave = image.buffer;
+            if (image.colorConversionCode >= 0) {
+                Imgproc.cvtColor(image.buffer, convertedImage, image.colorConversionCode);
+                imageToSave = convertedImage;
+            }
+
+            String extension;
+            MatOfInt parameters;
+            if (image.format == JPEG) {
+                extension = "jpg";
+                parameters = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, image.quality);
+            } else if (image.format == WEBP) {
+                extension = "webp";
+                parameters = new MatOfInt(Imgcodecs.IMWRITE_WEBP_QUALITY, image.quality);
+            } else {
+                extension = "png";
+                parameters = new MatOfInt(Imgcodecs.IMWRITE_PNG_COMPRESSION, image.quality);
+            }
+            fileHelper.writeImage(imageToSave, image.filename, extension, parameters);
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Writes the log file in a background thread, so the threads that produce the
+ * log never wait for the file system.
+ *
+ * The entries are kept in a bounded ring buffer until the writer thread takes
+ * them. The writer keeps the file open and accumulates the text in a buffer,
+ * which is written to the file when it's full, when the oldest text in it is
+ * more than FLUSH_INTERVAL old or when flush() is called.
+ *
+ * There are two kinds of entries: verbose entries, like the log of each frame,
+ * which are dropped when the buffer is almost full, and the other entries,
+ * like the actions of the user, which have some reserved space in the buffer.
+ * The number of dropped entries is written to the log.
+ */
+public class LogWriter implements Runnable {
+
+    private static final int CAPACITY = 256;
+    // Positions of the ring buffer that can't be used by verbose entries
+    private static final int RESERVED_CAPACITY = 16;
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final long FLUSH_INTERVAL = 1000;
+
+    private final File file;
+    private final String[] entries = new String[CAPACITY];
+    private int firstEntry = 0;
+    private int numberOfEntries = 0;
+    private long numberOfDroppedEntries = 0;
+    private long numberOfUnreportedDroppedEntries = 0;
+    private boolean shouldFlush = false;
+    private boolean isClosed = false;
+    private Thread thread;
+
+    // Used only by the writer thread
+    private final String[] entriesBeingWritten = new String[CAPACITY];
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder();
+    private FileChannel channel;
+    private long firstUnwrittenTextTime;
+
+    public LogWriter(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Adds an entry that can be dropped if the writer is falling behind.
+     */
+    public void writeVerbose(String text) {
+        add(text, CAPACITY - RESERVED_CAPACITY);
+    }
+
+    /**
+     * Adds an entry that can only be dropped if the buffer is completely full.
+     */
+    public void write(String text) {
+        add(text, CAPACITY);
+    }
+
+    private synchronized void add(String text, int capacity) {
+        if (isClosed) return;
+        if (numberOfEntries >= capacity) {
+            numberOfDroppedEntries++;
+            numberOfUnreportedDroppedEntries++;
+            return;
+        }
+
+        entries[(firstEntry + numberOfEntries) % CAPACITY] = text;
+        numberOfEntries++;
+        if (thread == null) {
+            thread = new Thread(this, "KifuRecorder-log-writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        notifyAll();
+    }
+
+    public synchronized long getNumberOfDroppedEntries() {
+        return numberOfDroppedEntries;
+    }
+
+    /**
+     * Asks the writer thread to write all entries added until now to the file. Doesn't wait for
+     * them to be written.
+     */
+    public synchronized void flush() {
+        shouldFlush = true;
+        notifyAll();
+    }
+
+    /**
+     * Writes the remaining entries to the file and stops the writer thread. Entries added after
+     * this are ignored.
+     */
+    public void close() {
+        Thread writerThread;
+        synchronized (this) {
+            isClosed = true;
+            notifyAll();
+            writerThread = thread;
+        }
+        if (writerThread == null) return;
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        openFile();
+        while (true) {
+            int numberOfEntriesToWrite;
+            long numberOfDroppedEntriesToReport;
+            boolean shouldWriteBuffer;
+            boolean shouldStop;
+
+            synchronized (this) {
+                try {
+                    waitForEntries();
+                } catch (InterruptedException e) {
+                    isClosed = true;
+                }
+
+                numberOfEntriesToWrite = numberOfEntries;
+                for (int i = 0; i < numberOfEntriesToWrite; i++) {
+                    int position = (firstEntry + i) % CAPACITY;
+                    entriesBeingWritten[i] = entries[position];
+                    entries[position] = null;
+                }
+                firstEntry = (firstEntry + numberOfEntriesToWrite) % CAPACITY;
+                numberOfEntries = 0;
+                numberOfDroppedEntriesToReport = numberOfUnreportedDroppedEntries;
+                numberOfUnreportedDroppedEntries = 0;
+                shouldWriteBuffer = shouldFlush || isClosed;
+                shouldFlush = false;
+                shouldStop = isClosed;
+            }
+
+            if (numberOfDroppedEntriesToReport > 0) {
+                append(numberOfDroppedEntriesToReport + " log entries were dropped\n");
+            }
+            for (int i = 0; i < numberOfEntriesToWrite; i++) {
+                append(entriesBeingWritten[i]);
+                entriesBeingWritten[i] = null;
+            }
+
+            if (shouldWriteBuffer || System.currentTimeMillis() - firstUnwrittenTextTime >= FLUSH_INTERVAL) {
+                writeBuffer();
+            }
+            if (shouldStop) break;
+        }
+        closeFile();
+    }
+
+    /**
+     * Waits until there are entries to write, the buffer should be written or the writer is
+     * closed.
+     */
+    private void waitForEntries() throws InterruptedException {
+        while (numberOfEntries == 0 && numberOfUnreportedDroppedEntries == 0 && !shouldFlush && !isClosed) {
+            if (buffer.position() == 0) {
+                wait();
+                continue;
+            }
+            long timeUntilFlush = firstUnwrittenTextTime + FLUSH_INTERVAL - System.currentTimeMillis();
+            if (timeUntilFlush <= 0) return;
+            wait(timeUntilFlush);
+        }
+    }
+
+    private void append(String text) {
+        if (buffer.position() == 0) {
+            firstUnwrittenTextTime = System.currentTimeMillis();
+        }
+        CharBuffer characters = CharBuffer.wrap(text);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(characters, buffer, true);
+            if (result.isOverflow()) {
+                writeBuffer();
+                firstUnwrittenTextTime = System.currentTimeMillis();
+            } else {
+                break;
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            writeBuffer();
+        }
+    }
+
+    private void openFile() {
+        try {
+            channel = new FileOutputStream(file, true).getChannel();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeBuffer() {
+        buffer.flip();
+        try {
+            if (channel != null) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeFile();
+        }
+        buffer.clear();
+    }
+
+    private void closeFile() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+    }
+
+}
@@ -0,0 +1,181 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Game;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Corner;
+
+/**
+ * Log file format:
+ *
+ * ============================================
+ * Frame X:
+ *
+ * Number of plays: X
+ *
+ * Corners:
+ *     (X1, Y1), (X2, Y2), (X3, Y3)...
+ *
+ * Stone detection:
+ *     (1, 1):
+ *         asdf
+ *     (2, 1):
+ *         qwer
+ *     ...
+ * ============================================
+ * Frame X + 1:
+ * ...
+ *
+ * The log file is written by a LogWriter in a background thread. If it can't keep up, the logs
+ * of some frames are dropped, but the actions of the user are always written. The images are
+ * saved by an ImageDumper, also in background threads.
+ */
+
+public class Logger {
+
+    private long frameNumber = 0;
+    private FileHelper fileHelper;
+    private boolean isActive = false;
+    private boolean shouldSaveImages = false;
+
+    private Game game;
+
+    private LogWriter logWriter;
+    private ImageDumper imageDumper;
+
+    public Logger(Game game, FileHelper fileHelper) {
+        this.game = game;
+        this.fileHelper = fileHelper;
+
+        logWriter = new LogWriter(fileHelper.getFile("", "log"));
+        imageDumper = new ImageDumper(fileHelper);
+        imageDumper.setQueueLimit("snapshot", 8);
+    }
+
+    /**
+     * The image dumper can be used to change the format of the images and the sampling rate of
+     * each category of image ("camera", "camera_com_contorno", "tabuleiro_ortogonal",
+     * "segundo_tabuleiro_ortogonal", "ultimo_tabuleiro_valido" and "snapshot").
+     */
+    public ImageDumper getImageDumper() {
+        return imageDumper;
+    }
+
+    public synchronized long getFrameNumber() {
+        return frameNumber;
+    }
+
+    /**
+     * Logs an event that doesn't belong to a frame, like an action of the user.
+     */
+    public void addToLog(String text) {
+        if (!isActive) return;
+        logWriter.write(text + "\n");
+    }
+
+    public void logCornerPositions(FrameLog frameLog, Corner[] cornerPositions) {
+        if (shouldLog(LoggingConfiguration.CORNER_POSITIONS)) {
+            frameLog.addToLog("Corner positions:");
+            for (int i = 0; i < 4; i++) {
+                frameLog.addToLog("    " + cornerPositions[i].toString());
+            }
+            frameLog.addToLog();
+        }
+    }
+
+    public void logNumberOfQuadrilateralsFoundByBoardDetector(FrameLog frameLog, int numberOfQuadrilaterals) {
+        if (shouldLog(LoggingConfiguration.NUMBER_OF_QUADRILATERALS_FOUND_BY_BOARD_DETECTOR)) {
+            frameLog.addToLog("Number of quadrilaterals found by board detector: " + numberOfQuadrilaterals);
+            frameLog.addToLog();
+        }
+    }
+
+    public void logCurrentBoardState(FrameLog frameLog) {
+        if (shouldLog(LoggingConfiguration.CURRENT_BOARD_STATE)) {
+            frameLog.addToLog("Current board state");
+            frameLog.addToLog(game.getLastBoard().toString());
+            frameLog.addToLog();
+        }
+    }
+
+    public void log(FrameLog frameLog) {
+        synchronized (this) {
+            frameNumber = frameLog.getFrameNumber();
+        }
+        if (!isActive) return;
+
+        frameLog.addToLog("Number of plays: " + game.getNumberOfMoves());
+        frameLog.addToLog();
+        frameLog.addToLog("Frame processing time: " + (System.currentTimeMillis() - frameLog.getStartProcessingTime()) + "ms");
+        logWriter.writeVerbose(frameLog.getLogText());
+
+        if (!shouldSaveImages) return;
+
+        if (shouldLog(LoggingConfiguration.RAW_CAMERA_IMAGE) && frameLog.getCameraFrame() != null) {
+            dumpImage(frameLog.getCameraFrame(), frameLog, "camera");
+        }
+
+        if (shouldLog(LoggingConfiguration.CAMERA_IMAGE_WITH_BOARD_CONTOUR) && frameLog.getCameraImageWithBoardContour() != null) {
+            dumpImage(frameLog.getCameraImageWithBoardContour(), frameLog, "camera_com_contorno");
+        }
+
+        if (shouldLog(LoggingConfiguration.ORTHOGONAL_BOARD_IMAGE) && frameLog.getOrtogonalBoardImage() != null) {
+            dumpImage(frameLog.getOrtogonalBoardImage(), frameLog, "tabuleiro_ortogonal");
+        }
+
+        if (frameLog.getOrtogonalBoardImage2() != null) {
+            dumpImage(frameLog.getOrtogonalBoardImage2(), frameLog, "segundo_tabuleiro_ortogonal");
+        }
+
+        if (frameLog.getLastValidOrtogonalBoardImage() != null) {
+            dumpImage(frameLog.getLastValidOrtogonalBoardImage(), frameLog, "ultimo_tabuleiro_valido");
+        }
+    }
+
+    private void dumpImage(Mat image, FrameLog frameLog, String category) {
+        imageDumper.dump(image, Imgproc.COLOR_RGBA2BGR, category, generateImageFilename(frameLog, category));
+    }
+
+    private boolean shouldLog(int flag) {
+        return LoggingConfiguration.shouldLog(flag);
+    }
+
+    private String generateImageFilename(FrameLog frameLog, String filename) {
+        return generateImageFilename(frameLog.getFrameNumber(), filename);
+    }
+
+    private String generateImageFilename(long frameNumber, String filename) {
+        return "frame_" + frameNumber + "_" + "jogada_" + game.getNumberOfMoves() + "_" + filename;
+    }
+
+    /**
+     * Number of frame logs that were not written because the log writer couldn't keep up.
+     */
+    public long getNumberOfDroppedLogEntries() {
+        return logWriter.getNumberOfDroppedEntries();
+    }
+
+    /**
+     * Makes the log writer write what it has to the file, without waiting for it.
+     */
+    public void flush() {
+        logWriter.flush();
+    }
+
+    /**
+     * Writes the remaining log and images and stops the threads that write them.
+     */
+    public void close() {
+        logWriter.close();
+        imageDumper.close();
+    }
+
+    public void takeSnapshot(Mat cameraFrame, Mat orthogonalBoard) {
+        imageDumper.dump(cameraFrame, Imgproc.COLOR_RGBA2BGR, "snapshot", generateImageFilename(getFrameNumber(), "snapshot_camera"));
+        if (orthogonalBoard != null) {
+            imageDumper.dump(orthogonalBoard, Imgproc.COLOR_RGBA2BGR, "snapshot", generateImageFilename(getFrameNumber(), "snapshot_orthogonal_board"));
+        }
+    }
+
+}
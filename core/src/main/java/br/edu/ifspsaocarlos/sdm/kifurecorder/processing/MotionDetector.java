@@ -0,0 +1,246 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Corner;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.CornerDetector;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Ponto;
+
+/**
+ * Decides which parts of the processing a camera frame needs, by comparing it
+ * with the frames that were last processed.
+ *
+ * Each frame is reduced to a grayscale thumbnail where each pixel is the
+ * average of a cell of CELL_SIZE x CELL_SIZE pixels of the frame. A cell has
+ * changed when its value differs more than CHANGE_THRESHOLD from the same cell
+ * in a reference thumbnail. There are two references: the thumbnail of the
+ * last frame whose corners were tracked and the one of the last frame whose
+ * stones were detected. The corners only need to be tracked again when a cell
+ * around a corner changed, and the stones only need to be detected again when
+ * a cell over the board changed. Both are done anyway after
+ * MAXIMUM_TIME_WITHOUT_PROCESSING, in case something changed too slowly to be
+ * noticed.
+ *
+ * The frames are analyzed by the corner tracking stage, but the reference of
+ * the stone detection is set by the stone detection stage, so the references
+ * are guarded by the monitor of this object.
+ */
+public class MotionDetector {
+
+    public static final int CELL_SIZE = 16;
+    private static final int CHANGE_THRESHOLD = 15;
+    private static final long MAXIMUM_TIME_WITHOUT_PROCESSING = 5000 * 1000000L;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    /**
+     * Result of the analysis of a frame.
+     */
+    public static class Motion {
+        public final byte[] thumbnail;
+        public final long timestamp;
+        public int numberOfChangedCellsAroundCorners;
+        public int numberOfChangedCellsOnBoard;
+        public int numberOfCellsOnBoard;
+        public boolean shouldTrackCorners;
+        public boolean shouldDetectStones;
+
+        Motion(byte[] thumbnail, long timestamp) {
+            this.thumbnail = thumbnail;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public String toString() {
+            return "Motion: " + numberOfChangedCellsAroundCorners + " changed cells around the corners, "
+                + numberOfChangedCellsOnBoard + " on the board, track corners = " + shouldTrackCorners
+                + ", detect stones = " + shouldDetectStones;
+        }
+    }
+
+    // Used only by the thread that analyzes the frames
+    private final Mat thumbnail = new Mat();
+    private final Mat grayscaleThumbnail = new Mat();
+
+    private byte[] cornerTrackingReference = null;
+    private long timeOfCornerTrackingReference = NO_TIMESTAMP;
+    private byte[] stoneDetectionReference = null;
+    private long timeOfStoneDetectionReference = NO_TIMESTAMP;
+
+    private long numberOfAnalyzedFrames = 0;
+    private long numberOfFramesThatNeededCornerTracking = 0;
+    private long numberOfFramesThatNeededStoneDetection = 0;
+    private long numberOfFramesThatNeededBoth = 0;
+    private long numberOfFramesThatNeededNeither = 0;
+
+    /**
+     * Compares the camera frame with the references.
+     *
+     * @param corners Current corners of the board, which limit the regions that are compared
+     */
+    public Motion analyze(Mat image, long timestamp, Corner[] corners) {
+        int columns = image.cols() / CELL_SIZE;
+        int rows = image.rows() / CELL_SIZE;
+        // With the image cropped to a multiple of the cell size, INTER_AREA just averages the
+        // cells, which is much faster than a resize by a fractional factor
+        Mat croppedImage = image.submat(0, rows * CELL_SIZE, 0, columns * CELL_SIZE);
+        Imgproc.resize(croppedImage, thumbnail, new Size(columns, rows), 0, 0, Imgproc.INTER_AREA);
+        croppedImage.release();
+        if (thumbnail.channels() == 4) {
+            Imgproc.cvtColor(thumbnail, grayscaleThumbnail, Imgproc.COLOR_RGBA2GRAY);
+        } else if (thumbnail.channels() == 3) {
+            Imgproc.cvtColor(thumbnail, grayscaleThumbnail, Imgproc.COLOR_BGR2GRAY);
+        } else {
+            thumbnail.copyTo(grayscaleThumbnail);
+        }
+        byte[] cells = new byte[rows * columns];
+        grayscaleThumbnail.get(0, 0, cells);
+
+        Motion motion = new Motion(cells, timestamp);
+        byte[] cornerReference;
+        byte[] stoneReference;
+        long timeOfCornerReference;
+        long timeOfStoneReference;
+        synchronized (this) {
+            cornerReference = cornerTrackingReference;
+            stoneReference = stoneDetectionReference;
+            timeOfCornerReference = timeOfCornerTrackingReference;
+            timeOfStoneReference = timeOfStoneDetectionReference;
+        }
+
+        double[] boardContour = new double[8];
+        for (int i = 0; i < 4; i++) {
+            Ponto realCornerPosition = corners[i].getRealCornerPosition();
+            boardContour[2 * i] = realCornerPosition.x;
+            boardContour[2 * i + 1] = realCornerPosition.y;
+        }
+
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int cell = row * columns + column;
+                double x = (column + 0.5) * CELL_SIZE;
+                double y = (row + 0.5) * CELL_SIZE;
+                if (hasChanged(cells, cornerReference, cell) && isAroundACorner(x, y, corners)) {
+                    motion.numberOfChangedCellsAroundCorners++;
+                }
+                if (isInside(x, y, boardContour)) {
+                    motion.numberOfCellsOnBoard++;
+                    if (hasChanged(cells, stoneReference, cell)) {
+                        motion.numberOfChangedCellsOnBoard++;
+                    }
+                }
+            }
+        }
+
+        motion.shouldTrackCorners = cornerReference == null || cornerReference.length != cells.length
+            || motion.numberOfChangedCellsAroundCorners > 0
+            || timestamp - timeOfCornerReference > MAXIMUM_TIME_WITHOUT_PROCESSING;
+        motion.shouldDetectStones = stoneReference == null || stoneReference.length != cells.length
+            || motion.numberOfChangedCellsOnBoard > 0
+            || timestamp - timeOfStoneReference > MAXIMUM_TIME_WITHOUT_PROCESSING;
+
+        synchronized (this) {
+            numberOfAnalyzedFrames++;
+            if (motion.shouldTrackCorners) numberOfFramesThatNeededCornerTracking++;
+            if (motion.shouldDetectStones) numberOfFramesThatNeededStoneDetection++;
+            if (motion.shouldTrackCorners && motion.shouldDetectStones) numberOfFramesThatNeededBoth++;
+            if (!motion.shouldTrackCorners && !motion.shouldDetectStones) numberOfFramesThatNeededNeither++;
+        }
+        return motion;
+    }
+
+    // Without a reference, the cells are not counted as changed, so a reset is not mistaken for a
+    // hand over the board
+    private static boolean hasChanged(byte[] cells, byte[] reference, int cell) {
+        if (reference == null || reference.length != cells.length) return false;
+        return Math.abs((cells[cell] & 0xFF) - (reference[cell] & 0xFF)) > CHANGE_THRESHOLD;
+    }
+
+    private static boolean isAroundACorner(double x, double y, Corner[] corners) {
+        // The region of interest of the corner detector, plus a cell
+        double radius = CornerDetector.RADIUS_OF_REGION_OF_INTEREST + CELL_SIZE;
+        for (Corner corner : corners) {
+            if (Math.abs(x - corner.position.x) <= radius && Math.abs(y - corner.position.y) <= radius) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the point is inside the convex quadrilateral, given as x1, y1, ..., x4, y4.
+     */
+    private static boolean isInside(double x, double y, double[] contour) {
+        boolean hasPositiveSide = false;
+        boolean hasNegativeSide = false;
+        for (int i = 0; i < 4; i++) {
+            double x1 = contour[2 * i];
+            double y1 = contour[2 * i + 1];
+            double x2 = contour[(2 * i + 2) % 8];
+            double y2 = contour[(2 * i + 3) % 8];
+            double crossProduct = (x2 - x1) * (y - y1) - (y2 - y1) * (x - x1);
+            if (crossProduct > 0) hasPositiveSide = true;
+            if (crossProduct < 0) hasNegativeSide = true;
+        }
+        return !(hasPositiveSide && hasNegativeSide);
+    }
+
+    /**
+     * The frame of the motion is the new reference for the corner tracking.
+     */
+    public synchronized void setCornerTrackingReference(Motion motion) {
+        cornerTrackingReference = motion.thumbnail;
+        timeOfCornerTrackingReference = motion.timestamp;
+    }
+
+    /**
+     * The frame of the motion is the new reference for the stone detection.
+     */
+    public synchronized void setStoneDetectionReference(Motion motion) {
+        stoneDetectionReference = motion.thumbnail;
+        timeOfStoneDetectionReference = motion.timestamp;
+    }
+
+    /**
+     * Forgets the reference of the stone detection, so the stones are detected again in the next
+     * frame. The detected board depends on the last board of the game, so it must be detected again
+     * whenever the game changes, even if the board image is the same.
+     */
+    public synchronized void resetStoneDetectionReference() {
+        stoneDetectionReference = null;
+        timeOfStoneDetectionReference = NO_TIMESTAMP;
+    }
+
+    /**
+     * Forgets the references, so the next frame is completely processed. Used when the game or the
+     * corners are changed by the user, which makes the last results invalid.
+     */
+    public synchronized void reset() {
+        cornerTrackingReference = null;
+        timeOfCornerTrackingReference = NO_TIMESTAMP;
+        stoneDetectionReference = null;
+        timeOfStoneDetectionReference = NO_TIMESTAMP;
+    }
+
+    public synchronized long getNumberOfAnalyzedFrames() {
+        return numberOfAnalyzedFrames;
+    }
+
+    public synchronized long getNumberOfFramesThatNeededCornerTracking() {
+        return numberOfFramesThatNeededCornerTracking;
+    }
+
+    public synchronized long getNumberOfFramesThatNeededStoneDetection() {
+        return numberOfFramesThatNeededStoneDetection;
+    }
+
+    public synchronized long getNumberOfFramesThatNeededBoth() {
+        return numberOfFramesThatNeededBoth;
+    }
+
+    public synchronized long getNumberOfFramesThatNeededNeither() {
+        return numberOfFramesThatNeededNeither;
+    }
+
+}
@@ -0,0 +1,98 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Board;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Move;
+
+/**
+ * Evidence gathered over the frames for each possible next move, used to
+ * decide when a move is added to the game.
+ *
+ * Each intersection has the evidence of a black and of a white stone being
+ * played on it, and there is the evidence of no move being played. Each stone
+ * detection adds to the evidence of the move it found (or of no move) the time
+ * since the previous detection, weighted by the confidence of the detector,
+ * and takes the same time away from the evidence of every other move. A move
+ * is added to the game when its evidence reaches COMMIT_EVIDENCE.
+ *
+ * This way a wrong detection in the middle of the right ones only delays the
+ * move a little, instead of restarting the wait. The time counted for a single
+ * detection is limited to MAXIMUM_EVIDENCE_PER_DETECTION, so a move is never
+ * added after only a few detections, however slowly the frames are processed.
+ *
+ * The times are taken from the timestamps of the frames, in nanoseconds.
+ */
+public class MoveEvidence {
+
+    // Time during which a move must be seen with full confidence to be added to the game
+    private static final long COMMIT_EVIDENCE = 1000 * 1000000L;
+    private static final long MAXIMUM_EVIDENCE_PER_DETECTION = 250 * 1000000L;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final int boardDimension;
+    // Evidence of a stone of each color on each intersection, indexed by (row * dimension + column) * 2 + color - 1
+    private final double[] stoneEvidence;
+    private double noMoveEvidence = 0;
+    private long timeOfLastDetection = NO_TIMESTAMP;
+
+    public MoveEvidence(int boardDimension) {
+        this.boardDimension = boardDimension;
+        stoneEvidence = new double[boardDimension * boardDimension * 2];
+    }
+
+    /**
+     * Adds the result of a stone detection.
+     *
+     * @param move Move found by the detector, or null if no move was found
+     * @param confidence Confidence of the detector on the result, from 0 to 1
+     * @return true if the evidence of the move is enough to add it to the game
+     */
+    public boolean add(Move move, double confidence, long timestamp) {
+        long timeSinceLastDetection = 0;
+        if (timeOfLastDetection != NO_TIMESTAMP) {
+            timeSinceLastDetection = Math.min(timestamp - timeOfLastDetection, MAXIMUM_EVIDENCE_PER_DETECTION);
+        }
+        timeOfLastDetection = timestamp;
+        if (timeSinceLastDetection <= 0) return false;
+
+        int index = move != null ? indexOf(move) : -1;
+        for (int i = 0; i < stoneEvidence.length; i++) {
+            if (i != index && stoneEvidence[i] > 0) {
+                stoneEvidence[i] = Math.max(0, stoneEvidence[i] - timeSinceLastDetection);
+            }
+        }
+
+        double evidence = Math.max(0, Math.min(confidence, 1)) * timeSinceLastDetection;
+        if (index == -1) {
+            noMoveEvidence += evidence;
+            return false;
+        }
+        noMoveEvidence = Math.max(0, noMoveEvidence - timeSinceLastDetection);
+        stoneEvidence[index] += evidence;
+        return stoneEvidence[index] >= COMMIT_EVIDENCE;
+    }
+
+    private int indexOf(Move move) {
+        return (move.row * boardDimension + move.column) * 2 + move.color - Board.BLACK_STONE;
+    }
+
+    /**
+     * Returns the evidence of the move in milliseconds of detections with full confidence.
+     */
+    public double getEvidenceOf(Move move) {
+        if (move == null) return noMoveEvidence / 1000000;
+        return stoneEvidence[indexOf(move)] / 1000000;
+    }
+
+    /**
+     * Discards the evidence gathered. Used when the game changes, because the evidence refers to
+     * the moves that could follow its last board.
+     */
+    public void reset() {
+        for (int i = 0; i < stoneEvidence.length; i++) {
+            stoneEvidence[i] = 0;
+        }
+        noMoveEvidence = 0;
+        timeOfLastDetection = NO_TIMESTAMP;
+    }
+
+}
@@ -0,0 +1,215 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+/**
+ * Decides which frames go through the warp and the stone detection, replacing
+ * a fixed processing rate.
+ *
+ * The interval between two processed frames depends on what is happening over
+ * the board:
+ *
+ * - active: the board changed in the last ACTIVITY_DURATION, or the board was
+ *   lost and found again. A move is probably being placed, so the frames are
+ *   processed every fastInterval, to register it as soon as possible;
+ * - hand present: a large part of the board changed, which is usually a hand
+ *   over it. The stones can't be detected under the hand, so the frames are
+ *   processed every normalInterval, just to notice when it leaves;
+ * - idle: nothing changed over the board for IDLE_DELAY, so the frames are
+ *   processed every idleInterval;
+ * - otherwise the frames are processed every normalInterval.
+ *
+ * The cost of processing a frame is measured by the stages and kept as a moving
+ * average. The interval is never shorter than the cost divided by
+ * maximumLoad, so the processing backs off when it can't keep up with the
+ * chosen rate instead of taking the whole CPU.
+ *
+ * The corners are tracked before the warp, on the frames where they may have
+ * moved and on every frame while the board is lost, so their tracking is
+ * limited on its own: it's done at most once every cost of the tracking
+ * divided by maximumLoad. Its cost is also part of the cost of a processed
+ * frame, whose corners must have been tracked.
+ *
+ * The frame timestamps and the costs are in nanoseconds, and the
+ * configuration is in milliseconds. The methods may be called from different
+ * threads.
+ */
+public class ProcessingScheduler {
+
+    public static final int STAGE_WARP = 0;
+    public static final int STAGE_STONE_DETECTION = 1;
+    public static final int STAGE_CORNER_TRACKING = 2;
+
+    private static final long ACTIVITY_DURATION = 3000 * 1000000L;
+    private static final long IDLE_DELAY = 10000 * 1000000L;
+    // Weight of the last measurement in the moving average of the costs
+    private static final double COST_SMOOTHING = 0.2;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private long fastInterval = 150;
+    private long normalInterval = 500;
+    private long idleInterval = 1000;
+    private double maximumLoad = 0.5;
+    // Fraction of the cells over the board that must change for a hand to be considered present
+    private double handPresenceThreshold = 0.05;
+
+    private final double[] averageStageCost = new double[3];
+    private long timeOfLastProcessing = NO_TIMESTAMP;
+    private long timeOfLastCornerTracking = NO_TIMESTAMP;
+    private long timeOfLastActivity = NO_TIMESTAMP;
+    private long currentInterval;
+
+    private long numberOfProcessedFrames = 0;
+    private long numberOfSkippedFrames = 0;
+    private long numberOfPostponedCornerTrackings = 0;
+
+    public ProcessingScheduler() {
+        currentInterval = normalInterval * 1000000L;
+    }
+
+    /**
+     * Returns true if the frame should be processed, considering the motion detected in it.
+     */
+    public synchronized boolean shouldProcess(long timestamp, MotionDetector.Motion motion) {
+        if (timeOfLastActivity == NO_TIMESTAMP) {
+            timeOfLastActivity = timestamp;
+        }
+
+        boolean isHandPresent = motion != null && motion.numberOfCellsOnBoard > 0
+            && motion.numberOfChangedCellsOnBoard > handPresenceThreshold * motion.numberOfCellsOnBoard;
+        boolean hasBoardChanged = motion != null && motion.numberOfChangedCellsOnBoard > 0;
+        if (hasBoardChanged) {
+            timeOfLastActivity = timestamp;
+        }
+
+        long interval;
+        if (isHandPresent) {
+            interval = normalInterval;
+        } else if (timestamp - timeOfLastActivity <= ACTIVITY_DURATION) {
+            interval = fastInterval;
+        } else if (timestamp - timeOfLastActivity > IDLE_DELAY) {
+            interval = idleInterval;
+        } else {
+            interval = normalInterval;
+        }
+        currentInterval = Math.max(interval * 1000000L, getMinimumInterval());
+
+        if (timeOfLastProcessing != NO_TIMESTAMP && timestamp - timeOfLastProcessing < currentInterval) {
+            numberOfSkippedFrames++;
+            return false;
+        }
+        timeOfLastProcessing = timestamp;
+        numberOfProcessedFrames++;
+        return true;
+    }
+
+    /**
+     * Returns true if the corners can be tracked in this frame, or false if the last time they
+     * were tracked was too recent for the cost of the tracking.
+     */
+    public synchronized boolean shouldTrackCorners(long timestamp) {
+        long minimumInterval = (long) (averageStageCost[STAGE_CORNER_TRACKING] / maximumLoad);
+        if (timeOfLastCornerTracking != NO_TIMESTAMP && timestamp - timeOfLastCornerTracking < minimumInterval) {
+            numberOfPostponedCornerTrackings++;
+            return false;
+        }
+        timeOfLastCornerTracking = timestamp;
+        return true;
+    }
+
+    /**
+     * Shortest interval at which the frames can be processed without exceeding the maximum load.
+     */
+    private long getMinimumInterval() {
+        double cost = 0;
+        for (double stageCost : averageStageCost) {
+            cost += stageCost;
+        }
+        return (long) (cost / maximumLoad);
+    }
+
+    /**
+     * Adds the time a stage took to process a frame, in nanoseconds, to the moving average of its
+     * cost.
+     */
+    public synchronized void addStageCost(int stage, long cost) {
+        if (averageStageCost[stage] == 0) {
+            averageStageCost[stage] = cost;
+        } else {
+            averageStageCost[stage] += COST_SMOOTHING * (cost - averageStageCost[stage]);
+        }
+    }
+
+    /**
+     * Called while the board is lost. When it's found again, the frames are processed at the
+     * fast rate, because the board was probably covered while a move was being placed.
+     */
+    public synchronized void onBoardLost(long timestamp) {
+        timeOfLastActivity = timestamp;
+    }
+
+    /**
+     * Processes the next frame, regardless of the interval. Used when the game or the corners are
+     * changed by the user.
+     */
+    public synchronized void reset() {
+        timeOfLastProcessing = NO_TIMESTAMP;
+        timeOfLastCornerTracking = NO_TIMESTAMP;
+        timeOfLastActivity = NO_TIMESTAMP;
+    }
+
+    public synchronized void setFastInterval(long milliseconds) {
+        fastInterval = milliseconds;
+    }
+
+    public synchronized void setNormalInterval(long milliseconds) {
+        normalInterval = milliseconds;
+    }
+
+    public synchronized void setIdleInterval(long milliseconds) {
+        idleInterval = milliseconds;
+    }
+
+    /**
+     * @param maximumLoad Maximum fraction of the time spent processing frames, from 0 to 1
+     */
+    public synchronized void setMaximumLoad(double maximumLoad) {
+        if (maximumLoad <= 0 || maximumLoad > 1) {
+            throw new IllegalArgumentException("Maximum load must be between 0 and 1");
+        }
+        this.maximumLoad = maximumLoad;
+    }
+
+    /**
+     * @param handPresenceThreshold Fraction of the board that must change for a hand to be
+     *                              considered present, from 0 to 1
+     */
+    public synchronized void setHandPresenceThreshold(double handPresenceThreshold) {
+        this.handPresenceThreshold = handPresenceThreshold;
+    }
+
+    /**
+     * Interval chosen for the last frame, in milliseconds.
+     */
+    public synchronized long getCurrentInterval() {
+        return currentInterval / 1000000L;
+    }
+
+    /**
+     * Moving average of the time a stage takes to process a frame, in milliseconds.
+     */
+    public synchronized double getAverageStageCost(int stage) {
+        return averageStageCost[stage] / 1000000.0;
+    }
+
+    public synchronized long getNumberOfProcessedFrames() {
+        return numberOfProcessedFrames;
+    }
+
+    public synchronized long getNumberOfSkippedFrames() {
+        return numberOfSkippedFrames;
+    }
+
+    public synchronized long getNumberOfPostponedCornerTrackings() {
+        return numberOfPostponedCornerTrackings;
+    }
+
+}
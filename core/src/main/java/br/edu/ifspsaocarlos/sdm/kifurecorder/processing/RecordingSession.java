@@ -0,0 +1,794 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.imgproc.Imgproc;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Board;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Game;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Move;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.boardDetector.BoardDetector;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Corner;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.CornerDetector;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.OpticalFlowCornerTracker;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Ponto;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline.Frame;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline.FrameOverlay;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline.TaskPool;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.similarityCalculator.FingerprintMatching;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.similarityCalculator.ImageFingerprint;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.stoneDetector.StoneDetector;
+
+/**
+ * Recognition of a game being recorded: turns camera frames (RGBA) into the
+ * moves of a game. This class has no Android dependencies, so the same code
+ * that runs on the phone can be run on a desktop JVM with the OpenCV Java
+ * bindings.
+ *
+ * Frames can be processed all at once with process(), or one stage at a time
+ * (trackCorners, warpBoardImage, detectStones and updateGame), which is what
+ * the processing pipeline of the app does. Each stage may be run by a
+ * different thread, as long as the frames go through the stages in order.
+ * All times are taken from the timestamps of the frames, in nanoseconds.
+ */
+public class RecordingSession {
+
+    public static final int STATE_RUNNING = 1;
+    public static final int STATE_LOOKING_FOR_BOARD = 2;
+    private static final int MOVEMENT_THRESHOLD = 10;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    // The four corners are detected at the same time, by the corner tracking thread and up to 3
+    // more threads, which are shared by all the sessions. With a single core, the corner tracking
+    // thread detects them alone.
+    private static final TaskPool cornerDetectionPool = new TaskPool("KifuRecorder-corner-detection",
+        Math.max(0, Math.min(3, Runtime.getRuntime().availableProcessors() - 1)));
+
+    private volatile int state = STATE_RUNNING;
+
+    private Logger logger;
+    private GameJournal journal;
+
+    private BoardDetector boardDetector = new BoardDetector();
+    private StoneDetector stoneDetector = new StoneDetector();
+    private CornerDetector[] cornerDetector;
+    private OpticalFlowCornerTracker opticalFlowCornerTracker = new OpticalFlowCornerTracker();
+    private FingerprintMatching fingerprintMatching = new FingerprintMatching();
+    private Game game;
+    private Board lastDetectedBoard;
+    private double confidenceOfLastDetectedBoard = 1;
+    private MoveEvidence moveEvidence;
+
+    private long frameNumber = 0;
+    private long numberOfFailedFrames = 0;
+    private volatile boolean paused = false;
+    private volatile boolean isCornerTrackingActive = true;
+    private volatile boolean isOpticalFlowTrackingActive = true;
+    private volatile boolean isOrthogonalBoardImagePreviewActive = true;
+    private Mat lastValidOrtogonalBoardImage = null;
+    private HomographyCache homographyCache = new HomographyCache();
+    private MotionDetector motionDetector = new MotionDetector();
+    private ProcessingScheduler scheduler = new ProcessingScheduler();
+    // BGR copy of the orthogonal board image, for the board detector
+    private Mat orthogonalBoardImageInBgr = new Mat();
+    private ImageFingerprint lastValidOrtogonalBoardImageFingerprint = null;
+
+    // This array stores the number of frames that each corner has stayed without
+    // ellipses being detected over them. This is used for false positive checking
+    private int[] numberOfFramesWithoutStone = { 0, 0, 0, 0 };
+    // This is also used to bring the detector back when it's strayed too far away
+    private int numberOfFramesWithDissimilarOrtogonalImages = 0;
+
+    private Corner[] boardCorners;
+    private Corner[] originalBoardCorners;
+    // Contains the board corners
+    private Mat boardPositionInImage;
+    private MatOfPoint boardContour;
+    // Board image transformed to orthogonal perspective
+    private volatile Mat orthogonalBoard;
+
+    // Guards the board corners and the corner detectors, which are updated by the corner tracking
+    // stage and by the user. The game is guarded by its own monitor.
+    private final Object cornersLock = new Object();
+
+    /**
+     * @param game Game being recorded
+     * @param foundBoardCorners Corners of the board found in the camera image, used as the
+     *                          starting point of the corner tracking
+     */
+    public RecordingSession(Game game, Corner[] foundBoardCorners) {
+        this.game = game;
+        stoneDetector.setBoardDimension(game.getBoardDimension());
+        lastDetectedBoard = new Board(game.getBoardDimension());
+        moveEvidence = new MoveEvidence(game.getBoardDimension());
+
+        originalBoardCorners = new Corner[4];
+        boardCorners = new Corner[4];
+        cornerDetector = new CornerDetector[4];
+        for (int cornerIndex = 0; cornerIndex < 4; cornerIndex++) {
+            originalBoardCorners[cornerIndex] = new Corner();
+            originalBoardCorners[cornerIndex].copy(foundBoardCorners[cornerIndex]);
+            boardCorners[cornerIndex] = new Corner();
+            boardCorners[cornerIndex].copy(foundBoardCorners[cornerIndex]);
+            cornerDetector[cornerIndex] = new CornerDetector();
+            cornerDetector[cornerIndex].setCorner(boardCorners[cornerIndex]);
+            cornerDetector[cornerIndex].setCornerIndex(cornerIndex + 1);
+        }
+        processBoardCorners();
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    public void setLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Records the changes made to the game in the journal, from the current state of the game.
+     * When there is a journal, saveGame() only makes sure the journal is on the storage, and the
+     * SGF file is written by finishRecording().
+     */
+    public void setJournal(GameJournal journal) {
+        synchronized (game) {
+            this.journal = journal;
+            journal.start(game);
+        }
+    }
+
+    public void setFileHelper(FileHelper fileHelper) {
+        for (int cornerIndex = 0; cornerIndex < 4; cornerIndex++) {
+            cornerDetector[cornerIndex].setFileHelper(fileHelper);
+        }
+    }
+
+    public boolean isLookingForBoard() {
+        return state == STATE_LOOKING_FOR_BOARD;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    public boolean isCornerTrackingActive() {
+        return isCornerTrackingActive;
+    }
+
+    public void setCornerTrackingActive(boolean isCornerTrackingActive) {
+        this.isCornerTrackingActive = isCornerTrackingActive;
+    }
+
+    public boolean isOpticalFlowTrackingActive() {
+        return isOpticalFlowTrackingActive;
+    }
+
+    /**
+     * When active, the corners are followed with optical flow from the last frame whose corners
+     * were tracked, and they are only detected again by the corner detectors when the flow is not
+     * reliable or after some frames. Otherwise they are always detected.
+     */
+    public void setOpticalFlowTrackingActive(boolean isOpticalFlowTrackingActive) {
+        this.isOpticalFlowTrackingActive = isOpticalFlowTrackingActive;
+    }
+
+    public boolean isOrthogonalBoardImagePreviewActive() {
+        return isOrthogonalBoardImagePreviewActive;
+    }
+
+    /**
+     * When the orthogonal board image is not shown in the overlay nor logged, the camera frame is
+     * not warped just for the stone detector, which samples the intersections straight from the
+     * camera frame.
+     */
+    public void setOrthogonalBoardImagePreviewActive(boolean isOrthogonalBoardImagePreviewActive) {
+        this.isOrthogonalBoardImagePreviewActive = isOrthogonalBoardImagePreviewActive;
+    }
+
+    /**
+     * Creates the next frame of this session. The frame takes ownership of the image.
+     */
+    public synchronized Frame createFrame(Mat image, long timestamp) {
+        frameNumber++;
+        return new Frame(image, timestamp, new FrameLog(frameNumber));
+    }
+
+    /**
+     * Processes a camera frame (RGBA) through all the stages. The frame is not modified nor
+     * released.
+     *
+     * @return true if a new move was added to the game
+     */
+    public boolean process(Mat image, long timestampNanos) {
+        Frame frame = createFrame(image, timestampNanos);
+        frame.log.setCameraFrame(image);
+
+        boolean wasMoveAdded = trackCorners(frame)
+            && warpBoardImage(frame)
+            && detectStones(frame)
+            && updateGame(frame);
+
+        if (logger != null) {
+            logger.log(frame.log);
+        }
+        return wasMoveAdded;
+    }
+
+    /**
+     * Called when a frame leaves the pipeline, to log it and count it if a stage failed.
+     */
+    public void onFrameCompleted(Frame frame) {
+        if (frame.failure != null) {
+            synchronized (this) {
+                numberOfFailedFrames++;
+            }
+        }
+        if (logger != null) {
+            logger.log(frame.log);
+        }
+    }
+
+    /**
+     * Number of frames whose processing was ended by an exception in a stage of the pipeline.
+     */
+    public synchronized long getNumberOfFailedFrames() {
+        return numberOfFailedFrames;
+    }
+
+    public MotionDetector getMotionDetector() {
+        return motionDetector;
+    }
+
+    /**
+     * The scheduler decides which frames are warped and have their stones detected. Its
+     * processing rates can be configured.
+     */
+    public ProcessingScheduler getProcessingScheduler() {
+        return scheduler;
+    }
+
+    public boolean trackCorners(Frame frame) {
+        boolean wasCornerTrackingPostponed = false;
+        synchronized (cornersLock) {
+            frame.motion = motionDetector.analyze(frame.image, frame.timestamp, boardCorners);
+            frame.log.addToLog(frame.motion.toString());
+            // While the board is lost, the corners are tracked on every frame
+            if (isCornerTrackingActive && (frame.motion.shouldTrackCorners || state == STATE_LOOKING_FOR_BOARD)) {
+                if (scheduler.shouldTrackCorners(frame.timestamp)) {
+                    long start = System.nanoTime();
+                    updateCorners(frame);
+                    scheduler.addStageCost(ProcessingScheduler.STAGE_CORNER_TRACKING, System.nanoTime() - start);
+                } else {
+                    wasCornerTrackingPostponed = true;
+                }
+            }
+            frame.boardPositionInImage = boardPositionInImage;
+            frame.boardContour = boardContour;
+        }
+
+        if (state == STATE_LOOKING_FOR_BOARD) {
+            scheduler.onBoardLost(frame.timestamp);
+            frame.log.addToLog("Board is not inside contour");
+            frame.log.addToLog("");
+            return false;
+        }
+        if (wasCornerTrackingPostponed) {
+            // The corners may have moved, so the board can't be found with their last positions
+            frame.log.addToLog("Corner tracking postponed, it takes " + scheduler.getAverageStageCost(ProcessingScheduler.STAGE_CORNER_TRACKING) + "ms");
+            return false;
+        }
+        return true;
+    }
+
+    private void updateCorners(Frame frame) {
+        // The corners are detected when the flow can't follow them, and while the board is lost
+        if (!isOpticalFlowTrackingActive || state == STATE_LOOKING_FOR_BOARD || !followCornersWithOpticalFlow(frame)) {
+            for (int i = 0; i < 4; i++) {
+                cornerDetector[i].setImageIndex((int)frame.getNumber());
+            }
+            updateCornerPositions(frame);
+            if (state == STATE_RUNNING) {
+                opticalFlowCornerTracker.setReference(frame.image, boardCorners);
+            } else {
+                opticalFlowCornerTracker.reset();
+            }
+        }
+        motionDetector.setCornerTrackingReference(frame.motion);
+    }
+
+    public boolean warpBoardImage(Frame frame) {
+        if (!scheduler.shouldProcess(frame.timestamp, frame.motion)) return false;
+        frame.log.addToLog("Processing interval = " + scheduler.getCurrentInterval() + "ms");
+
+        if (!frame.motion.shouldDetectStones) {
+            frame.log.addToLog("The board didn't change since the last stone detection");
+            return true;
+        }
+
+        long start = System.nanoTime();
+
+        // The frame was already warped with the same corners by the corner tracking, unless the
+        // corners were not updated
+        Mat orthogonalBoardImage = homographyCache.getWarpedImage(frame.image, frame.boardPositionInImage);
+        if (orthogonalBoardImage == null && (isOrthogonalBoardImagePreviewActive
+                || LoggingConfiguration.shouldLog(LoggingConfiguration.ORTHOGONAL_BOARD_IMAGE))) {
+            orthogonalBoardImage = homographyCache.warp(frame.image, frame.boardPositionInImage);
+        }
+        frame.orthogonalBoardImage = orthogonalBoardImage;
+        frame.log.setOrtogonalBoardImage(frame.orthogonalBoardImage);
+
+        if (LoggingConfiguration.shouldLog(LoggingConfiguration.CAMERA_IMAGE_WITH_BOARD_CONTOUR)) {
+            Mat cameraImageWithBoardContour = frame.image.clone();
+            Drawer.drawBoardContour(cameraImageWithBoardContour, frame.boardContour);
+            frame.log.setCameraImageWithBoardContour(cameraImageWithBoardContour);
+        }
+
+        orthogonalBoard = isOrthogonalBoardImagePreviewActive ? frame.orthogonalBoardImage : null;
+        scheduler.addStageCost(ProcessingScheduler.STAGE_WARP, System.nanoTime() - start);
+        return true;
+    }
+
+    public boolean detectStones(Frame frame) {
+        Board lastBoard;
+        boolean canNextMoveBeBlack;
+        boolean canNextMoveBeWhite;
+        synchronized (game) {
+            lastBoard = game.getLastBoard();
+            canNextMoveBeBlack = game.canNextMoveBe(Board.BLACK_STONE);
+            canNextMoveBeWhite = game.canNextMoveBe(Board.WHITE_STONE);
+            if (!frame.motion.shouldDetectStones) {
+                // Nothing changed over the board, so the detector would find the same board
+                frame.detectedBoard = lastDetectedBoard;
+                frame.detectionConfidence = confidenceOfLastDetectedBoard;
+                return true;
+            }
+        }
+
+        ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+        // TODO: Check the size of the orthogonal board image here
+        //       This affects the radius size when calculating the average color around an intersection
+        // int imageWidth = (int)orthogonalBoard.size().width;
+        // int imageHeight = (int)orthogonalBoard.size().height;
+        ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+        long start = System.nanoTime();
+        if (frame.orthogonalBoardImage != null) {
+            stoneDetector.setBoardImage(frame.orthogonalBoardImage);
+        } else {
+            stoneDetector.setCameraImage(frame.image, homographyCache.getTransformationMatrix(frame.boardPositionInImage));
+        }
+        frame.detectedBoard = stoneDetector.detect(lastBoard, canNextMoveBeBlack, canNextMoveBeWhite);
+        frame.detectionConfidence = stoneDetector.getConfidenceOfLastDetection();
+        motionDetector.setStoneDetectionReference(frame.motion);
+        scheduler.addStageCost(ProcessingScheduler.STAGE_STONE_DETECTION, System.nanoTime() - start);
+
+        if (logger != null) {
+            logger.logCurrentBoardState(frame.log);
+        }
+        return true;
+    }
+
+    /**
+     * Adds the detected board to the game when there is enough evidence of its move.
+     *
+     * @return true if a new move was added to the game
+     */
+    public boolean updateGame(Frame frame) {
+        Board board = frame.detectedBoard;
+
+        synchronized (game) {
+            if (!paused) {
+
+                Move move = board.getDifferenceTo(game.getLastBoard());
+                boolean hasEnoughEvidence = moveEvidence.add(move, frame.detectionConfidence, frame.timestamp);
+                frame.log.addToLog("Evidence of " + (move != null ? "move " + move : "no move") + " = "
+                    + moveEvidence.getEvidenceOf(move) + "ms");
+                if (hasEnoughEvidence && game.addMoveIfItIsValid(board)) {
+                    frame.wasMoveAdded = true;
+                    frame.log.addToLog("Added move " + game.getLastMove().sgf() + " to the game");
+                    moveEvidence.reset();
+                    motionDetector.resetStoneDetectionReference();
+                    if (journal != null) {
+                        journal.appendMove(game.getLastMove());
+                    }
+                }
+
+            }
+
+            lastDetectedBoard = board;
+            confidenceOfLastDetectedBoard = frame.detectionConfidence;
+        }
+
+        return frame.wasMoveAdded;
+    }
+
+    /**
+     * Creates an overlay to be drawn over the camera image from the current state of the
+     * corners, the orthogonal board image and the game.
+     */
+    public FrameOverlay createOverlay() {
+        MatOfPoint contour;
+        synchronized (cornersLock) {
+            contour = boardContour;
+        }
+        synchronized (game) {
+            // When it's paused, draws stone detector's current output (useful for debugging)
+            Board board = paused ? lastDetectedBoard : game.getLastBoard();
+            Move lastMove = paused ? null : game.getLastMove();
+            return new FrameOverlay(orthogonalBoard, contour, state == STATE_LOOKING_FOR_BOARD, board, lastMove);
+        }
+    }
+
+    private void processBoardCorners() {
+        Point[] cornerPoints = new Point[4];
+        for (int i = 0; i < 4; i++) {
+            Ponto ponto = boardCorners[i].getRealCornerPosition();
+            cornerPoints[i] = new Point(ponto.x, ponto.y);
+        }
+
+        boardPositionInImage = new Mat(4, 1, CvType.CV_32FC2);
+        boardPositionInImage.put(0, 0,
+                cornerPoints[0].x, cornerPoints[0].y,
+                cornerPoints[1].x, cornerPoints[1].y,
+                cornerPoints[2].x, cornerPoints[2].y,
+                cornerPoints[3].x, cornerPoints[3].y);
+
+        boardContour = new MatOfPoint(cornerPoints);
+    }
+
+    /**
+     * Moves the corners to where the optical flow followed them.
+     *
+     * @return false if the flow was not reliable, and the corners must be detected
+     */
+    private boolean followCornersWithOpticalFlow(Frame frame) {
+        long start = System.nanoTime();
+        Point[] newCornerPositions = opticalFlowCornerTracker.track(frame.image);
+        long duration = System.nanoTime() - start;
+        if (newCornerPositions == null) {
+            frame.log.addToLog("Corners can't be followed by optical flow: " + opticalFlowCornerTracker.getReasonOfLastFailure());
+            return false;
+        }
+
+        for (int i = 0; i < 4; i++) {
+            // The corners keep being or not being stones, and their displacement to the real corners
+            Corner corner = new Corner();
+            corner.copy(boardCorners[i]);
+            corner.position = new Ponto((int)Math.round(newCornerPositions[i].x), (int)Math.round(newCornerPositions[i].y));
+            // The stone moves with the corner
+            if (corner.stonePosition != null) {
+                corner.stonePosition = corner.stonePosition.clone();
+                corner.stonePosition.center.x += corner.position.x - boardCorners[i].position.x;
+                corner.stonePosition.center.y += corner.position.y - boardCorners[i].position.y;
+            }
+            boardCorners[i] = corner;
+            cornerDetector[i].setCorner(corner);
+            frame.log.addToLog(corner.toString());
+        }
+        frame.log.addToLog("Time to follow the 4 corners by optical flow = " + duration / 1000000 + "ms");
+        processBoardCorners();
+        // The flow found the board where it was, but the board detector compares each image with
+        // the one it saw last, which gets older while the corners are followed
+        boardDetector.reset();
+
+        if (logger != null) {
+            logger.logCornerPositions(frame.log, boardCorners);
+        }
+        return true;
+    }
+
+    private void updateCornerPositions(Frame frame) {
+        // The corner detectors only read the camera frame and convert just the regions around the
+        // corners, so they can run at the same time and the frame doesn't need to be copied
+        final Mat image = frame.image;
+        final Corner[] possibleNewCorners = new Corner[4];
+        final long[] durations = new long[4];
+        Runnable[] cornerDetections = new Runnable[4];
+        for (int i = 0; i < 4; i++) {
+            final int cornerIndex = i;
+            cornerDetections[i] = new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    possibleNewCorners[cornerIndex] = cornerDetector[cornerIndex].detectCornerIn(image);
+                    durations[cornerIndex] = System.nanoTime() - start;
+                }
+            };
+        }
+        long start = System.nanoTime();
+        cornerDetectionPool.runAll(cornerDetections);
+        long duration = System.nanoTime() - start;
+
+        boolean wereAllCornersFound = true;
+        for (int i = 0; i < 4; i++) {
+            frame.log.addToLog(cornerDetector[i].getResultOfLastCoarseSearch());
+            if (possibleNewCorners[i] != null) {
+                frame.log.addToLog(possibleNewCorners[i].toString());
+            } else {
+                frame.log.addToLog("Corner " + i + " was not found");
+            }
+            frame.log.addToLog("Time to process corner " + i + " = " + durations[i] / 1000000 + "ms");
+            if (possibleNewCorners[i] == null) {
+                wereAllCornersFound = false;
+            }
+        }
+        frame.log.addToLog("Time to process the 4 corners = " + duration / 1000000 + "ms");
+
+        // The orthogonal board images are generated from the camera frame (RGBA), so they can be
+        // shared with the warp stage
+        Mat orthogonalBoardImage = wereAllCornersFound
+            ? homographyCache.warp(frame.image, possibleNewCorners)
+            : null;
+        if (orthogonalBoardImage != null) {
+            Imgproc.cvtColor(orthogonalBoardImage, orthogonalBoardImageInBgr, Imgproc.COLOR_RGBA2BGR);
+        }
+
+        if (wereAllCornersFound && boardDetector.isBoardContainedIn(orthogonalBoardImageInBgr)) {
+            frame.log.addToLog("Board is inside contour");
+            int numberOfCornersThatMoved = getNumberOfCornersThatMoved(possibleNewCorners, boardCorners);
+            frame.log.addToLog("Number of corners that moved: " + numberOfCornersThatMoved);
+            int numberOfEmptyCornersThatMoved = getNumberOfEmptyCornersThatMoved(possibleNewCorners, boardCorners);
+            frame.log.addToLog("Number of empty corners that moved: " + numberOfEmptyCornersThatMoved);
+            double[] distanceToNewPoint = new double[4];
+            for (int i = 0; i < 4; i++) {
+                distanceToNewPoint[i] = possibleNewCorners[i].distanceTo(boardCorners[i]);
+                frame.log.addToLog("Distance to old corner point " + (i + 1) + " = " + distanceToNewPoint[i]);
+            }
+
+            for (int i = 0; i < 4; i++) {
+                if (numberOfCornersThatMoved < 4) {
+                    // Not all corners moved, so this is probably a corner adjustment
+                    // Update relative corner position of possible corners with stones
+                    if (possibleNewCorners[i].isStone) {
+                        if (!boardCorners[i].isStone) {
+                            possibleNewCorners[i].updateDisplacementVectorRelativeTo(boardCorners[i].position);
+                        } else {
+                            possibleNewCorners[i].updateDisplacementVectorRelativeTo(boardCorners[i].getRealCornerPosition());
+                        }
+                    }
+                } else if (possibleNewCorners[i].isStone) {
+                    // All corners moved together, so this is probably a board displacement and we
+                    // don't update the corners's relative position to the real corners
+                    possibleNewCorners[i].displacementToRealCorner = boardCorners[i].displacementToRealCorner;
+                }
+            }
+
+            Mat orthogonalBoardImage2 = homographyCache.warp(frame.image, possibleNewCorners);
+            ImageFingerprint orthogonalBoardImage2Fingerprint = fingerprintMatching.calculateFingerprintOf(orthogonalBoardImage2);
+            double similarity = lastValidOrtogonalBoardImageFingerprint != null ? fingerprintMatching.calculateSimilatiryBetween(lastValidOrtogonalBoardImageFingerprint, orthogonalBoardImage2Fingerprint) : -1;
+            frame.log.addToLog("Similarity between new orthogonal board image to last valid one = " + similarity);
+            frame.log.setOrtogonalBoardImage2(orthogonalBoardImage2);
+
+            if (lastValidOrtogonalBoardImage == null || frame.getNumber() <= 3 || numberOfFramesWithDissimilarOrtogonalImages >= 5 || fingerprintMatching.areImagesSimilar(lastValidOrtogonalBoardImageFingerprint, orthogonalBoardImage2Fingerprint)) {
+                // This condition should be time based and not frame based
+                if (numberOfFramesWithDissimilarOrtogonalImages >= 5) {
+                    frame.log.addToLog("Forcing orthogonal image to be similar");
+                } else {
+                    frame.log.addToLog("New orthogonal board image is similar to last valid one");
+                }
+                for (int i = 0; i < 4; i++) {
+                    if (!possibleNewCorners[i].isStone) {
+                        numberOfFramesWithoutStone[i]++;
+                    } else {
+                        numberOfFramesWithoutStone[i] = 0;
+                    }
+
+                    if (!boardCorners[i].isStone && !possibleNewCorners[i].isStone && numberOfCornersThatMoved < 3 && numberOfEmptyCornersThatMoved == 1) {
+                        // This means a single empty corner moved by itself, which is not possible. This addresses a wrong
+                        // corner detection in frame 70 of sequence 16.
+                        frame.log.addToLog("Corner " + i + " - This empty corner moved by itself");
+                        continue;
+                    }
+                    if (!possibleNewCorners[i].isStone && boardCorners[i].isStone && possibleNewCorners[i].distanceTo(boardCorners[i].getRealCornerPosition()) > MOVEMENT_THRESHOLD
+                            // This condition should be time based instead of frame based, something like 2 or 3 seconds or so
+                            && numberOfFramesWithoutStone[i] < 5
+                    ) {
+                        // If a corner was a stone and is not anymore, the new empty corner should match the real corner
+                        // position that the stone was on. This addresses a wrong corner detection in frame 74 of sequence 14.
+                        frame.log.addToLog("Corner " + i + " - This now empty corner is in a wrong position");
+                        frame.log.addToLog("Number of frames without stone = " + numberOfFramesWithoutStone[i]);
+                        continue;
+                    }
+                    boardCorners[i] = possibleNewCorners[i];
+                    cornerDetector[i].setCorner(possibleNewCorners[i]);
+                }
+                numberOfFramesWithDissimilarOrtogonalImages = 0;
+                // The images returned by the homography cache are never modified, so there's no need to copy it
+                lastValidOrtogonalBoardImage = orthogonalBoardImage2;
+                lastValidOrtogonalBoardImageFingerprint = orthogonalBoardImage2Fingerprint;
+                frame.log.setLastValidOrtogonalBoardImage(lastValidOrtogonalBoardImage);
+            } else {
+                frame.log.addToLog("New orthogonal board image is NOT similar to last valid one");
+                numberOfFramesWithDissimilarOrtogonalImages++;
+            }
+
+            processBoardCorners();
+            state = STATE_RUNNING;
+        } else {
+            state = STATE_LOOKING_FOR_BOARD;
+            frame.log.addToLog("Board is NOT inside contour");
+            frame.log.addToLog("were all corners found = " + wereAllCornersFound);
+        }
+
+        if (logger != null) {
+            logger.logCornerPositions(frame.log, boardCorners);
+        }
+    }
+
+    private int getNumberOfCornersThatMoved(Corner[] possibleNewCorners, Corner[] corners) {
+        int numberOfCornersThatMoved = 0;
+        for (int i = 0; i < 4; i++) {
+            if (possibleNewCorners[i].distanceTo(corners[i]) > MOVEMENT_THRESHOLD) {
+                numberOfCornersThatMoved++;
+            }
+        }
+        return numberOfCornersThatMoved;
+    }
+
+    private int getNumberOfEmptyCornersThatMoved(Corner[] possibleNewCorners, Corner[] corners) {
+        int numberOfEmptyCornersThatMoved = 0;
+        for (int i = 0; i < 4; i++) {
+            if (!possibleNewCorners[i].isStone
+                    // && !corners[i].isStone
+                    && possibleNewCorners[i].distanceTo(corners[i]) > MOVEMENT_THRESHOLD) {
+                numberOfEmptyCornersThatMoved++;
+            }
+        }
+        return numberOfEmptyCornersThatMoved;
+    }
+
+    /**
+     * @return the move that was undone
+     */
+    public Move undoLastMove() {
+        synchronized (game) {
+            Move undoneMove = game.undoLastMove();
+            if (undoneMove != null && journal != null) {
+                journal.appendUndo();
+            }
+            moveEvidence.reset();
+            motionDetector.resetStoneDetectionReference();
+            scheduler.reset();
+            return undoneMove;
+        }
+    }
+
+    /**
+     * Adds a move informed by the user.
+     *
+     * @return true if the move was valid and was added to the game
+     */
+    public boolean addMove(Move move) {
+        synchronized (game) {
+            Board newBoard = game.getLastBoard().generateNewBoardWith(move);
+            boolean wasMoveAdded = game.addMoveIfItIsValid(newBoard);
+            if (wasMoveAdded) {
+                game.updateNumberOfManualAdditions();
+                if (journal != null) {
+                    journal.appendManuallyAddedMove(game.getLastMove());
+                }
+                moveEvidence.reset();
+                motionDetector.resetStoneDetectionReference();
+                scheduler.reset();
+            }
+            return wasMoveAdded;
+        }
+    }
+
+    public void rotate(int direction) {
+        synchronized (cornersLock) {
+            Corner[] rotatedBoardCorners = new Corner[4];
+            for (int i = 0; i < 4; i++) {
+                rotatedBoardCorners[i] = new Corner();
+            }
+
+            // Counter-clockwise
+            if (direction == -1) {
+                rotatedBoardCorners[0] = boardCorners[1];
+                rotatedBoardCorners[1] = boardCorners[2];
+                rotatedBoardCorners[2] = boardCorners[3];
+                rotatedBoardCorners[3] = boardCorners[0];
+            }
+            // Clockwise
+            else if (direction == 1) {
+                rotatedBoardCorners[0] = boardCorners[3];
+                rotatedBoardCorners[1] = boardCorners[0];
+                rotatedBoardCorners[2] = boardCorners[1];
+                rotatedBoardCorners[3] = boardCorners[2];
+            }
+
+            boardCorners = rotatedBoardCorners;
+            opticalFlowCornerTracker.reset();
+            for (int i = 0; i < 4; i++) {
+                cornerDetector[i].reset();
+                cornerDetector[i].setCorner(boardCorners[i]);
+            }
+            processBoardCorners();
+
+            if (lastValidOrtogonalBoardImage != null) {
+                lastValidOrtogonalBoardImage = ImageUtils.rotateImage(lastValidOrtogonalBoardImage, direction);
+                lastValidOrtogonalBoardImageFingerprint = fingerprintMatching.calculateFingerprintOf(lastValidOrtogonalBoardImage);
+            }
+        }
+        synchronized (game) {
+            game.rotate(direction);
+            if (journal != null) {
+                journal.appendRotation(direction);
+            }
+            moveEvidence.reset();
+        }
+        motionDetector.reset();
+        scheduler.reset();
+    }
+
+    public void resetCornersToTheirOriginalPositions() {
+        synchronized (cornersLock) {
+            for (int i = 0; i < 4; i++) {
+                boardCorners[i].copy(originalBoardCorners[i]);
+            }
+            opticalFlowCornerTracker.reset();
+            for (int i = 0; i < 4; i++) {
+                cornerDetector[i].reset();
+            }
+            processBoardCorners();
+        }
+        motionDetector.reset();
+        scheduler.reset();
+    }
+
+    public boolean saveGame(FileHelper fileHelper) {
+        synchronized (game) {
+            if (journal != null) {
+                journal.sync();
+                return true;
+            }
+            return fileHelper.saveGameFile(game);
+        }
+    }
+
+    /**
+     * Writes the SGF file of the game. The journal is deleted if the file was written.
+     */
+    public boolean finishRecording(FileHelper fileHelper) {
+        synchronized (game) {
+            boolean wasGameSaved = fileHelper.saveGameFile(game);
+            if (wasGameSaved && journal != null) {
+                journal.delete();
+                journal = null;
+            }
+            return wasGameSaved;
+        }
+    }
+
+    public void storeTemporarily(FileHelper fileHelper) {
+        synchronized (cornersLock) {
+            synchronized (game) {
+                fileHelper.storeGameTemporarily(game, boardCorners);
+            }
+        }
+    }
+
+    public void restoreStoredTemporarily(FileHelper fileHelper) {
+        synchronized (cornersLock) {
+            synchronized (game) {
+                fileHelper.restoreGameStoredTemporarily(game, boardCorners);
+                moveEvidence.reset();
+                if (journal != null) {
+                    journal.start(game);
+                }
+            }
+            opticalFlowCornerTracker.reset();
+            for (int i = 0; i < 4; i++) {
+                cornerDetector[i].reset();
+            }
+            processBoardCorners();
+        }
+        motionDetector.reset();
+        scheduler.reset();
+    }
+
+}
@@ -0,0 +1,247 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+import org.opencv.core.RotatedRect;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Game;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Move;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Corner;
+
+/**
+ * Binary snapshot of a recording session, stored when the activity is paused
+ * and read back when it is recreated. Only the moves of the game are stored;
+ * the boards are rebuilt by playing the moves again. A game with 300 moves
+ * takes a little more than 1 KB.
+ *
+ * Format (big-endian), version 1:
+ *
+ * int     MAGIC ("KRSS")
+ * short   version
+ * int     board dimension
+ * string  komi, black player, white player (short length + UTF-8 bytes)
+ * int     number of undoes, number of manual additions
+ * int     number of moves
+ * moves   color, row, column, is pass (one byte each)
+ * corners 4 x (int x, int y, int displacement x, int displacement y, byte is stone,
+ *         byte has stone position [, 5 doubles: center x, center y, width, height, angle])
+ *
+ * The snapshot is encoded by the caller, which holds the locks of the game and
+ * the corners, and written to the file in a background thread.
+ */
+public class SessionSnapshot {
+
+    private static final int MAGIC = 0x4B525353;
+    private static final short VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Snapshots being written, which must be finished before a snapshot is read
+    private static int numberOfPendingWrites = 0;
+    private static final Object writesLock = new Object();
+
+    private SessionSnapshot() {}
+
+    public static ByteBuffer encode(Game game, Corner[] corners) {
+        byte[] komi = bytesOf(game.getKomi());
+        byte[] blackPlayer = bytesOf(game.getBlackPlayer());
+        byte[] whitePlayer = bytesOf(game.getWhitePlayer());
+        List<Move> moves = game.getMoves();
+
+        int size = 4 + 2 + 4 + (2 + komi.length) + (2 + blackPlayer.length) + (2 + whitePlayer.length)
+            + 4 + 4 + 4 + moves.size() * 4 + corners.length * (4 * 4 + 2 + 5 * 8);
+        ByteBuffer snapshot = ByteBuffer.allocate(size);
+
+        snapshot.putInt(MAGIC);
+        snapshot.putShort(VERSION);
+        snapshot.putInt(game.getBoardDimension());
+        putString(snapshot, komi);
+        putString(snapshot, blackPlayer);
+        putString(snapshot, whitePlayer);
+        snapshot.putInt(game.getNumberOfUndoes());
+        snapshot.putInt(game.getNumberOfManualAdditions());
+
+        snapshot.putInt(moves.size());
+        for (Move move : moves) {
+            snapshot.put((byte) move.color);
+            snapshot.put((byte) move.row);
+            snapshot.put((byte) move.column);
+            snapshot.put((byte) (move.isPass ? 1 : 0));
+        }
+
+        for (Corner corner : corners) {
+            snapshot.putInt(corner.position.x);
+            snapshot.putInt(corner.position.y);
+            snapshot.putInt(corner.displacementToRealCorner.x);
+            snapshot.putInt(corner.displacementToRealCorner.y);
+            snapshot.put((byte) (corner.isStone ? 1 : 0));
+            RotatedRect stonePosition = corner.stonePosition;
+            snapshot.put((byte) (stonePosition != null ? 1 : 0));
+            if (stonePosition != null) {
+                snapshot.putDouble(stonePosition.center.x);
+                snapshot.putDouble(stonePosition.center.y);
+                snapshot.putDouble(stonePosition.size.width);
+                snapshot.putDouble(stonePosition.size.height);
+                snapshot.putDouble(stonePosition.angle);
+            }
+        }
+
+        snapshot.flip();
+        return snapshot;
+    }
+
+    /**
+     * Restores the game and the corners stored in the snapshot.
+     */
+    public static void decode(ByteBuffer snapshot, Game game, Corner[] corners) throws IOException {
+        try {
+            if (snapshot.getInt() != MAGIC) {
+                throw new IOException("Not a session snapshot");
+            }
+            short version = snapshot.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unknown session snapshot version: " + version);
+            }
+
+            int boardDimension = snapshot.getInt();
+            String komi = getString(snapshot);
+            String blackPlayer = getString(snapshot);
+            String whitePlayer = getString(snapshot);
+            int numberOfUndoes = snapshot.getInt();
+            int numberOfManualAdditions = snapshot.getInt();
+
+            Game restoredGame = new Game(boardDimension, blackPlayer, whitePlayer, komi);
+            int numberOfMoves = snapshot.getInt();
+            for (int i = 0; i < numberOfMoves; i++) {
+                Move move = new Move(0, 0, 0);
+                move.color = snapshot.get();
+                move.row = snapshot.get();
+                move.column = snapshot.get();
+                move.isPass = snapshot.get() != 0;
+                if (!restoredGame.replayMove(move)) {
+                    throw new IOException("Invalid move in session snapshot: " + move);
+                }
+            }
+            restoredGame.setPrecisionStatistics(numberOfUndoes, numberOfManualAdditions);
+
+            Corner[] restoredCorners = new Corner[corners.length];
+            for (int i = 0; i < corners.length; i++) {
+                restoredCorners[i] = new Corner(snapshot.getInt(), snapshot.getInt());
+                restoredCorners[i].displacementToRealCorner.x = snapshot.getInt();
+                restoredCorners[i].displacementToRealCorner.y = snapshot.getInt();
+                restoredCorners[i].isStone = snapshot.get() != 0;
+                if (snapshot.get() != 0) {
+                    RotatedRect stonePosition = new RotatedRect();
+                    stonePosition.center.x = snapshot.getDouble();
+                    stonePosition.center.y = snapshot.getDouble();
+                    stonePosition.size.width = snapshot.getDouble();
+                    stonePosition.size.height = snapshot.getDouble();
+                    stonePosition.angle = snapshot.getDouble();
+                    restoredCorners[i].stonePosition = stonePosition;
+                }
+            }
+
+            // Nothing is changed if the snapshot is not valid
+            game.copy(restoredGame);
+            for (int i = 0; i < corners.length; i++) {
+                corners[i].copy(restoredCorners[i]);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated session snapshot");
+        }
+    }
+
+    /**
+     * Writes the snapshot to the file in a background thread. The snapshot is written to a
+     * temporary file first, which replaces the file when it's complete.
+     */
+    public static void writeInBackground(final ByteBuffer snapshot, final File file) {
+        synchronized (writesLock) {
+            numberOfPendingWrites++;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(snapshot, file);
+                } finally {
+                    synchronized (writesLock) {
+                        numberOfPendingWrites--;
+                        writesLock.notifyAll();
+                    }
+                }
+            }
+        }, "KifuRecorder-snapshot-writer").start();
+    }
+
+    private static void write(ByteBuffer snapshot, File file) {
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try {
+            FileChannel channel = new FileOutputStream(temporaryFile, false).getChannel();
+            try {
+                while (snapshot.hasRemaining()) {
+                    channel.write(snapshot);
+                }
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+            if (!temporaryFile.renameTo(file)) {
+                System.err.println("Session snapshot could not be saved in " + file.getName());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads a snapshot from the file, after the snapshots being written are finished.
+     */
+    public static ByteBuffer read(File file) throws IOException {
+        synchronized (writesLock) {
+            while (numberOfPendingWrites > 0) {
+                try {
+                    writesLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the session snapshot");
+                }
+            }
+        }
+
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            ByteBuffer snapshot = ByteBuffer.allocateDirect((int) channel.size());
+            while (snapshot.hasRemaining()) {
+                if (channel.read(snapshot) == -1) break;
+            }
+            snapshot.flip();
+            return snapshot;
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static byte[] bytesOf(String text) {
+        return (text == null ? "" : text).getBytes(UTF_8);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+}
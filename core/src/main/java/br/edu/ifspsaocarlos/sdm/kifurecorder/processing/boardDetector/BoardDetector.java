@@ -46,6 +46,13 @@ public class BoardDetector implements BoardDetectorInterface {
         }
     }
 
+    public void reset() {
+        setState(STATE_BOARD_IS_INSIDE);
+        for (BoardDetectorInterface boardDetector : boardDetectors) {
+            boardDetector.reset();
+        }
+    }
+
     public void setImageIndex(int imageIndex) {
         this.imageIndex = imageIndex;
         for (BoardDetectorInterface boardDetector : boardDetectors) {
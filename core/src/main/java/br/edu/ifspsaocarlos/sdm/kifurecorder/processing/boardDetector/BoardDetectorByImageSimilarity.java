@@ -86,6 +86,10 @@ public class BoardDetectorByImageSimilarity implements BoardDetectorInterface {
         this.state = state;
     }
 
+    public void reset() {
+        lastImageWhenBoardWasInside = null;
+    }
+
     public void setImageIndex(int imageIndex) {
         this.imageIndex = imageIndex;
     }
@@ -161,6 +161,10 @@ public class BoardDetectorByQuadrilateralCounting implements BoardDetectorInterf
         this.state = state;
     }
 
+    public void reset() {
+        lastNumberOfQuadrilateralsFound = -1;
+    }
+
     public void setImageIndex(int imageIndex) {
         this.imageIndex = imageIndex;
     }
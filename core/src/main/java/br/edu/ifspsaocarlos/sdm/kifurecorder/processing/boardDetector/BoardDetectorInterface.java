@@ -12,5 +12,7 @@ public interface BoardDetectorInterface {
 
     public void setState(int state);
     public void setImageIndex(int imageIndex);
+    // Forgets the images seen before, so the next one is checked as if it were the first
+    public void reset();
 
 }
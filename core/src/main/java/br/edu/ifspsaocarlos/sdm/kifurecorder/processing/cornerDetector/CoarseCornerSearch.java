@@ -0,0 +1,144 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Finds roughly where a corner is in a large region around its last position,
+ * so the corner detectors only need to look for it in a small region around
+ * that estimate.
+ *
+ * The region is converted to grayscale and downsampled NUMBER_OF_PYRAMID_LEVELS
+ * times by half, and compared with the appearance of the corner, a downsampled
+ * patch around it in the frame where it was last detected. The estimate is the
+ * position of the most similar patch, so it is only as precise as a pixel of
+ * the downsampled image, PRECISION pixels of the frame.
+ *
+ * The appearance is taken when the corner is detected, but it only replaces the
+ * last one when that detection is accepted, by setting the corner to it.
+ */
+public class CoarseCornerSearch {
+
+    private static final int NUMBER_OF_PYRAMID_LEVELS = 2;
+    public static final int PRECISION = 1 << NUMBER_OF_PYRAMID_LEVELS;
+    private static final int RADIUS_OF_APPEARANCE = CornerDetector.RADIUS_OF_REGION_OF_INTEREST;
+    // Normalized correlation, from -1 to 1, between the appearance of the corner and the best patch
+    private static final double MINIMUM_SIMILARITY = 0.85;
+
+    private Mat appearance = null;
+    // Position of the corner in the appearance, in downsampled pixels
+    private double appearanceCenterX;
+    private double appearanceCenterY;
+    private Mat candidateAppearance = null;
+    private double candidateAppearanceCenterX;
+    private double candidateAppearanceCenterY;
+    private Ponto candidatePosition = null;
+    private double similarityOfLastSearch = 0;
+
+    // Images reused between the frames
+    private Mat grayscaleRegion = new Mat();
+    private Mat downsampledRegion = new Mat();
+    private Mat similarities = new Mat();
+
+    /**
+     * Looks for the corner up to the given distance from its last position.
+     *
+     * @return the estimated position of the corner, or null if its appearance is not known yet or
+     *         no part of the region looks like it
+     */
+    public Ponto search(Mat image, Ponto lastPosition, int maximumDistance) {
+        similarityOfLastSearch = 0;
+        if (appearance == null) return null;
+
+        // The whole appearance must fit in the region wherever the corner is
+        Rect region = getRegionAround(lastPosition, maximumDistance + RADIUS_OF_APPEARANCE, image);
+        downsample(image, region, downsampledRegion);
+        if (downsampledRegion.cols() < appearance.cols() || downsampledRegion.rows() < appearance.rows()) {
+            return null;
+        }
+        Imgproc.matchTemplate(downsampledRegion, appearance, similarities, Imgproc.TM_CCOEFF_NORMED);
+        Core.MinMaxLocResult mostSimilar = Core.minMaxLoc(similarities);
+        similarityOfLastSearch = mostSimilar.maxVal;
+        if (mostSimilar.maxVal < MINIMUM_SIMILARITY) return null;
+
+        return new Ponto(
+            region.x + (int)Math.round((mostSimilar.maxLoc.x + appearanceCenterX) * PRECISION),
+            region.y + (int)Math.round((mostSimilar.maxLoc.y + appearanceCenterY) * PRECISION)
+        );
+    }
+
+    public boolean knowsAppearance() {
+        return appearance != null;
+    }
+
+    /**
+     * Similarity between the appearance of the corner and the patch found by the last search, from
+     * -1 to 1, or 0 if nothing was searched.
+     */
+    public double getSimilarityOfLastSearch() {
+        return similarityOfLastSearch;
+    }
+
+    /**
+     * Takes the appearance of the corner detected in the image, which is used from the moment the
+     * corner is accepted.
+     */
+    public void takeAppearanceAround(Mat image, Ponto position) {
+        Rect region = getRegionAround(position, RADIUS_OF_APPEARANCE, image);
+        if (candidateAppearance == null) candidateAppearance = new Mat();
+        downsample(image, region, candidateAppearance);
+        candidateAppearanceCenterX = (position.x - region.x) / (double)PRECISION;
+        candidateAppearanceCenterY = (position.y - region.y) / (double)PRECISION;
+        candidatePosition = new Ponto(position.x, position.y);
+    }
+
+    /**
+     * The corner was set to this position. If it's the last detected one, its appearance becomes
+     * the one that is searched. Otherwise the corner was moved by something else, like the optical
+     * flow, and it keeps its last appearance.
+     */
+    public void onCornerSetTo(Ponto position) {
+        if (candidatePosition == null || candidatePosition.x != position.x || candidatePosition.y != position.y) return;
+        Mat lastAppearance = appearance;
+        appearance = candidateAppearance;
+        appearanceCenterX = candidateAppearanceCenterX;
+        appearanceCenterY = candidateAppearanceCenterY;
+        candidateAppearance = lastAppearance;
+        candidatePosition = null;
+    }
+
+    /**
+     * Forgets the appearance of the corner, when it becomes another corner of the board.
+     */
+    public void reset() {
+        appearance = null;
+        candidatePosition = null;
+    }
+
+    private void downsample(Mat image, Rect region, Mat downsampledImage) {
+        Mat regionImage = new Mat(image, region);
+        if (regionImage.channels() == 4) {
+            Imgproc.cvtColor(regionImage, grayscaleRegion, Imgproc.COLOR_RGBA2GRAY);
+        } else if (regionImage.channels() == 3) {
+            Imgproc.cvtColor(regionImage, grayscaleRegion, Imgproc.COLOR_BGR2GRAY);
+        } else {
+            regionImage.copyTo(grayscaleRegion);
+        }
+        regionImage.release();
+        Imgproc.pyrDown(grayscaleRegion, downsampledImage);
+        for (int level = 1; level < NUMBER_OF_PYRAMID_LEVELS; level++) {
+            Imgproc.pyrDown(downsampledImage, downsampledImage);
+        }
+    }
+
+    private Rect getRegionAround(Ponto position, int radius, Mat image) {
+        int x = Math.max(0, Math.min(image.cols() - 1, position.x - radius));
+        int y = Math.max(0, Math.min(image.rows() - 1, position.y - radius));
+        int width = Math.min(image.cols() - x, 2 * radius);
+        int height = Math.min(image.rows() - y, 2 * radius);
+        return new Rect(x, y, width, height);
+    }
+
+}
@@ -0,0 +1,230 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.FileHelper;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.Logger;
+
+public class CornerDetector {
+
+    public final static int RADIUS_OF_REGION_OF_INTEREST = 40;
+    // While an empty corner is found where the coarse search expected it, the region of interest
+    // shrinks down to this radius, plus the recent speed of the corner. A corner with a stone keeps
+    // the whole region, which the ellipse detectors need to tell the stone from the board
+    private final static int MINIMUM_RADIUS_OF_REGION_OF_INTEREST = 20;
+    // The coarse search looks for the corner at least this far from its last position, plus a
+    // few times its recent speed. If it's not found, the search is widened up to the maximum
+    private final static int MINIMUM_RADIUS_OF_SEARCH = 2 * RADIUS_OF_REGION_OF_INTEREST;
+    private final static int MAXIMUM_RADIUS_OF_SEARCH = 4 * RADIUS_OF_REGION_OF_INTEREST;
+    // Similarity of the coarse search above which its estimate is trusted to be within a few pixels
+    private final static double MINIMUM_SIMILARITY_TO_SHRINK = 0.9;
+    private long imageIndex;
+    private int cornerIndex;
+    private Corner corner;
+    private int radiusOfRegionOfInterest = RADIUS_OF_REGION_OF_INTEREST;
+    private int radiusOfSearch = MINIMUM_RADIUS_OF_SEARCH;
+    // Average distance the corner moved between the last detections
+    private double speed = 0;
+    // Result of the coarse search of the last detection, for the log of the frame
+    private String resultOfLastCoarseSearch = "";
+    private FileHelper fileHelper;
+    private Logger logger;
+
+    private HarrisCornerDetector harrisCornerDetector = new HarrisCornerDetector();
+    private EllipseCornerDetector ellipseCornerDetector = new EllipseCornerDetector();
+    private CoarseCornerSearch coarseCornerSearch = new CoarseCornerSearch();
+    // BGR copy of the region of interest of a camera frame, reused between the frames
+    private Mat regionImage = new Mat();
+
+    public void setFileHelper(FileHelper fileHelper) {
+        this.fileHelper = fileHelper;
+    }
+
+    public void setLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    public void setImageIndex(int imageIndex) {
+        this.imageIndex = imageIndex;
+        harrisCornerDetector.setImageIndex(imageIndex);
+        ellipseCornerDetector.setImageIndex(imageIndex);
+    };
+
+    public void setCornerIndex(int cornerIndex) {
+        this.cornerIndex = cornerIndex;
+        harrisCornerDetector.setCornerIndex(cornerIndex);
+        ellipseCornerDetector.setCornerIndex(cornerIndex);
+    }
+
+    public void setCorner(Corner corner) {
+        this.corner = corner;
+        coarseCornerSearch.onCornerSetTo(corner.position);
+    }
+
+    /**
+     * Forgets how the corner looks and moves, when it becomes another corner of the board.
+     */
+    public void reset() {
+        coarseCornerSearch.reset();
+        radiusOfRegionOfInterest = RADIUS_OF_REGION_OF_INTEREST;
+        radiusOfSearch = MINIMUM_RADIUS_OF_SEARCH;
+        speed = 0;
+    }
+
+    /**
+     * Looks for the corner coarse to fine: first in a downsampled image of a large region around
+     * its last position, and then with the corner detectors in a small region of interest around
+     * where it was roughly found. If the coarse search doesn't find it, which is always the case
+     * before the corner is first detected, the region of interest is the one around its last
+     * position. The image can be the camera frame (RGBA), in which case only the regions are converted, or
+     * a BGR image.
+     */
+    public Corner detectCornerIn(Mat image) {
+        Ponto center = corner.position;
+        int radius = RADIUS_OF_REGION_OF_INTEREST;
+        int searchRadius = radiusOfSearch;
+        Ponto roughPosition = coarseCornerSearch.search(image, corner.position, searchRadius);
+        // After a bump on the table, the corner may be much farther than it usually moves
+        while (roughPosition == null && coarseCornerSearch.knowsAppearance() && searchRadius < MAXIMUM_RADIUS_OF_SEARCH) {
+            searchRadius = Math.min(2 * searchRadius, MAXIMUM_RADIUS_OF_SEARCH);
+            roughPosition = coarseCornerSearch.search(image, corner.position, searchRadius);
+        }
+        resultOfLastCoarseSearch = "Corner " + cornerIndex + " roughly found at " + roughPosition + " up to " + searchRadius
+            + " pixels away, similarity = " + coarseCornerSearch.getSimilarityOfLastSearch();
+        if (roughPosition != null) {
+            radius = radiusOfRegionOfInterest;
+            // A movement smaller than the precision of the coarse search may be just its error
+            if (Math.abs(roughPosition.x - center.x) > CoarseCornerSearch.PRECISION
+                    || Math.abs(roughPosition.y - center.y) > CoarseCornerSearch.PRECISION) {
+                center = roughPosition;
+            }
+        }
+
+        Corner newCorner = detectCornerAround(center, radius, image);
+        if (newCorner == null && (center != corner.position || radius != RADIUS_OF_REGION_OF_INTEREST)) {
+            // The coarse search may have been misled, by a hand over the corner for example
+            newCorner = detectCornerAround(corner.position, RADIUS_OF_REGION_OF_INTEREST, image);
+        }
+
+        adaptRadiiTo(newCorner, roughPosition);
+        if (newCorner != null) {
+            coarseCornerSearch.takeAppearanceAround(image, newCorner.position);
+        }
+        return newCorner;
+    }
+
+    /**
+     * Where the coarse search of the last detection found the corner. The detections run in the
+     * threads of a pool, so it's added to the log of the frame by the thread that waits for them.
+     */
+    public String getResultOfLastCoarseSearch() {
+        return resultOfLastCoarseSearch;
+    }
+
+    private void adaptRadiiTo(Corner newCorner, Ponto roughPosition) {
+        if (newCorner == null) {
+            radiusOfRegionOfInterest = RADIUS_OF_REGION_OF_INTEREST;
+            return;
+        }
+
+        speed = (speed + Math.sqrt(newCorner.distanceTo(corner))) / 2;
+        radiusOfSearch = Math.min(MINIMUM_RADIUS_OF_SEARCH + (int)(4 * speed), MAXIMUM_RADIUS_OF_SEARCH);
+        boolean wasFoundWhereExpected = !newCorner.isStone
+            && roughPosition != null
+            && coarseCornerSearch.getSimilarityOfLastSearch() >= MINIMUM_SIMILARITY_TO_SHRINK
+            && Math.abs(newCorner.getX() - roughPosition.x) <= 2 * CoarseCornerSearch.PRECISION
+            && Math.abs(newCorner.getY() - roughPosition.y) <= 2 * CoarseCornerSearch.PRECISION;
+        radiusOfRegionOfInterest = wasFoundWhereExpected
+            ? Math.min(MINIMUM_RADIUS_OF_REGION_OF_INTEREST + (int)speed, RADIUS_OF_REGION_OF_INTEREST)
+            : RADIUS_OF_REGION_OF_INTEREST;
+    }
+
+    /**
+     * Looks for the corner with the Harris and the ellipse corner detectors in the region of
+     * interest of the given radius around the center.
+     */
+    private Corner detectCornerAround(Ponto center, int radius, Mat image) {
+        Rect regionOfInterest = getRegionOfInterestAround(center, radius, image);
+        Mat regionImage = getRegionImage(regionOfInterest, image);
+//        Imgcodecs.imwrite("processing/corner" + cornerIndex + "_frame" + imageIndex + ".png", regionImage);
+
+        List<Corner> candidateCornerHarris = harrisCornerDetector.detectCandidateCornersIn(regionImage);
+        List<Corner> candidateCornerEllipsis = ellipseCornerDetector.detectCandidateCornersIn(regionImage);
+
+        // Remove Harris corner candidates that are too close to circle corner candidates
+        // This is done to try to remove corner candidates that appear on the edge of circles
+        for (Iterator<Corner> it = candidateCornerHarris.iterator(); it.hasNext();) {
+            Corner corner = it.next();
+            for (Corner circlePoint : candidateCornerEllipsis) {
+                if (circlePoint.isTooCloseToCircle(corner.position)) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+
+        List<Corner> candidateCorners = new ArrayList<>();
+        candidateCorners.addAll(candidateCornerHarris);
+        candidateCorners.addAll(candidateCornerEllipsis);
+//        filterCandidateCornersWhichFallOutsideROI(cnadidateCorners);
+
+        // A corner should have at most 4 candidates, be them Harris corners or ellipsis corners
+        // More than that probably means something is wrong in the detection, or there's something
+        // else in the scene, like a player's hand or something else
+//        if (candidateCorners.size() > 4) return null;
+
+        Ponto upperLeftCornerOfRegionOfInterest = new Ponto(regionOfInterest.x, regionOfInterest.y);
+        Corner candidateCorner = getCandidateNearestTo(new Ponto(center.x - regionOfInterest.x, center.y - regionOfInterest.y), candidateCorners);
+
+        if (candidateCorner != null) {
+            Ponto newCornerPosition = candidateCorner.position.add(upperLeftCornerOfRegionOfInterest);
+            return new Corner(newCornerPosition.x, newCornerPosition.y, candidateCorner.isStone);
+        }
+
+        return null;
+    }
+
+    private Rect getRegionOfInterestAround(Ponto center, int radius, Mat image) {
+        int x = center.x - radius > 0 ? center.x - radius : 0;
+        int y = center.y - radius > 0 ? center.y - radius : 0;
+        int w = x + 2 * radius < image.cols() ? 2 * radius : image.cols() - x;
+        int h = y + 2 * radius < image.rows() ? 2 * radius : image.rows() - y;
+        return new Rect(x, y, w, h);
+    }
+
+    private Mat getRegionImage(Rect regionOfInterest, Mat image) {
+        Mat region = new Mat(image, regionOfInterest);
+        if (image.channels() != 4) return region;
+        Imgproc.cvtColor(region, regionImage, Imgproc.COLOR_RGBA2BGR);
+        region.release();
+        return regionImage;
+    }
+
+//    private void filterCandidateCornersWhichFallOutsideROI(List<Corner> candidateCorners) {
+//        Iterator it = candidateCorners.iterator();
+//        while (it.hasNext()) {
+//            Corner candidateCorner = (Corner)it.next();
+//            if (candidateCorner.getX())
+//        }
+//    }
+
+    private Corner getCandidateNearestTo(Ponto center, List<Corner> corners) {
+        Corner neasrestCorner = null;
+        double minimumDistance = 999999999;
+        for (Corner corner : corners) {
+            if (corner == null) continue;
+            if (corner.distanceTo(center) < minimumDistance) {
+                minimumDistance = corner.distanceTo(center);
+                neasrestCorner = corner;
+            }
+        }
+        return neasrestCorner;
+    }
+
+}
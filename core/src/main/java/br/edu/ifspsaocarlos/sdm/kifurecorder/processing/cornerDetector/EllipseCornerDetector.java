@@ -0,0 +1,137 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.opencv.core.Mat;
+import org.opencv.core.RotatedRect;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.ellipseDetector.EllipseDetectorInterface;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.ellipseDetector.FirstEllipseDetector;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.ellipseDetector.SecondEllipseDetector;
+
+public class EllipseCornerDetector implements CornerDetectorInterface {
+
+    // Candidates closer than this are considered the same stone
+    private static final int DISTANCE_THRESHOLD = 50;
+
+    private int imageIndex;
+    private int cornerIndex;
+    // The detectors are kept between the frames, so they can reuse their images
+    private EllipseDetectorInterface firstEllipseDetector = new FirstEllipseDetector();
+    private EllipseDetectorInterface secondEllipseDetector = new SecondEllipseDetector();
+    private EllipseDetectorInterface[] ellipseDetectors = { firstEllipseDetector, secondEllipseDetector };
+
+    public void setImageIndex(int imageIndex) {
+        this.imageIndex = imageIndex;
+        updateFilePrefixes();
+    }
+
+    public void setCornerIndex(int cornerIndex) {
+        this.cornerIndex = cornerIndex;
+        updateFilePrefixes();
+    }
+
+    private void updateFilePrefixes() {
+        String prefix = "processing/corner" + cornerIndex + "_frame" + imageIndex;
+        firstEllipseDetector.setFilePrefix(prefix + "_first-filter");
+        secondEllipseDetector.setFilePrefix(prefix + "_second-filter");
+    }
+
+    public List<Corner> detectCandidateCornersIn(Mat image) {
+        List<Corner> candidateCorners = new ArrayList<>();
+
+        for (EllipseDetectorInterface ellipseDetector : ellipseDetectors) {
+            List<RotatedRect> ellipses = ellipseDetector.detectEllipsesIn(image);
+            for (RotatedRect ellipse : ellipses) {
+                Corner corner = new Corner((int)ellipse.center.x, (int)ellipse.center.y, true);
+                corner.stonePosition = ellipse;
+                candidateCorners.add(corner);
+            }
+        }
+
+        return mergeEllipsesWithCloseCenters(candidateCorners);
+    }
+
+    // The candidates are put in a grid of cells at least as large as the distance threshold, so
+    // each one is compared only with the candidates of its cell and of the 8 cells around it
+    private List<Corner> mergeEllipsesWithCloseCenters(List<Corner> candidateCorners) {
+        List<Corner> mergedCandidateCorners = new ArrayList<Corner>();
+        int numberOfCorners = candidateCorners.size();
+        if (numberOfCorners == 0) return mergedCandidateCorners;
+        boolean[] wasMerged = new boolean[numberOfCorners];
+
+        int minimumX = Integer.MAX_VALUE, minimumY = Integer.MAX_VALUE;
+        int maximumX = Integer.MIN_VALUE, maximumY = Integer.MIN_VALUE;
+        for (Corner corner : candidateCorners) {
+            minimumX = Math.min(minimumX, corner.getX());
+            minimumY = Math.min(minimumY, corner.getY());
+            maximumX = Math.max(maximumX, corner.getX());
+            maximumY = Math.max(maximumY, corner.getY());
+        }
+        // The cells are enlarged when the candidates are spread out, so the grid is never much
+        // larger than the number of candidates
+        long cellSize = DISTANCE_THRESHOLD;
+        while (((long)maximumX - minimumX) / cellSize * (((long)maximumY - minimumY) / cellSize) > 4 * numberOfCorners) {
+            cellSize *= 2;
+        }
+        int numberOfColumns = (int)(((long)maximumX - minimumX) / cellSize) + 1;
+        int numberOfRows = (int)(((long)maximumY - minimumY) / cellSize) + 1;
+
+        // The indexes of the candidates are sorted by cell, keeping the order in which they were found
+        int[] columnOfCorner = new int[numberOfCorners];
+        int[] rowOfCorner = new int[numberOfCorners];
+        int[] firstIndexOfCell = new int[numberOfColumns * numberOfRows + 1];
+        for (int i = 0; i < numberOfCorners; i++) {
+            Corner corner = candidateCorners.get(i);
+            columnOfCorner[i] = (int)(((long)corner.getX() - minimumX) / cellSize);
+            rowOfCorner[i] = (int)(((long)corner.getY() - minimumY) / cellSize);
+            firstIndexOfCell[rowOfCorner[i] * numberOfColumns + columnOfCorner[i] + 1]++;
+        }
+        for (int cell = 0; cell < numberOfColumns * numberOfRows; cell++) {
+            firstIndexOfCell[cell + 1] += firstIndexOfCell[cell];
+        }
+        int[] cornerIndexesByCell = new int[numberOfCorners];
+        int[] nextIndexOfCell = Arrays.copyOf(firstIndexOfCell, firstIndexOfCell.length - 1);
+        for (int i = 0; i < numberOfCorners; i++) {
+            cornerIndexesByCell[ nextIndexOfCell[rowOfCorner[i] * numberOfColumns + columnOfCorner[i]]++ ] = i;
+        }
+
+        int[] nearbyCornerIndexes = new int[numberOfCorners];
+        for (int i = 0; i < numberOfCorners; i++) {
+            Corner corner1 = candidateCorners.get(i);
+
+            int numberOfNearbyCorners = 0;
+            for (int row = Math.max(0, rowOfCorner[i] - 1); row <= Math.min(numberOfRows - 1, rowOfCorner[i] + 1); row++) {
+                for (int column = Math.max(0, columnOfCorner[i] - 1); column <= Math.min(numberOfColumns - 1, columnOfCorner[i] + 1); column++) {
+                    int cell = row * numberOfColumns + column;
+                    for (int k = firstIndexOfCell[cell]; k < firstIndexOfCell[cell + 1]; k++) {
+                        if (cornerIndexesByCell[k] > i) nearbyCornerIndexes[numberOfNearbyCorners++] = cornerIndexesByCell[k];
+                    }
+                }
+            }
+            // The candidates are merged in the order they were found
+            Arrays.sort(nearbyCornerIndexes, 0, numberOfNearbyCorners);
+
+            for (int k = 0; k < numberOfNearbyCorners; k++) {
+                int j = nearbyCornerIndexes[k];
+                if (wasMerged[j]) continue;
+
+                Corner corner2 = candidateCorners.get(j);
+                if (corner1.distanceTo(corner2) < DISTANCE_THRESHOLD) {
+                    mergedCandidateCorners.add(corner1.mergeWith(corner2));
+                    wasMerged[i] = true;
+                    wasMerged[j] = true;
+                }
+            }
+
+            if (!wasMerged[i]) {
+                mergedCandidateCorners.add(corner1);
+            }
+        }
+
+        return mergedCandidateCorners;
+    }
+
+}
\ No newline at end of file
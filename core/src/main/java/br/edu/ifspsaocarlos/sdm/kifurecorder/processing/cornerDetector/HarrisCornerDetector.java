@@ -27,8 +27,7 @@ public class HarrisCornerDetector implements CornerDetectorInterface {
         Mat resultOfCornerHarris = applyCornerHarrisTo(grayscaleImage);
         resultOfCornerHarris = dilateImage(resultOfCornerHarris);
         double harrisThreshold = calculateHarrisCornerThreshold(resultOfCornerHarris);
-        List<PointCluster> cornerPointsClusters = findPossibleCornerRegions(resultOfCornerHarris, harrisThreshold);
-        List<Ponto> possibleCenters = getCentroidsFrom(cornerPointsClusters);
+        List<Ponto> possibleCenters = findCentroidsOfPossibleCornerRegions(resultOfCornerHarris, harrisThreshold);
         List<Corner> candidateCorners = new ArrayList<>();
         for (Ponto center : possibleCenters) {
             candidateCorners.add(new Corner(center.x, center.y));
@@ -66,44 +65,33 @@ public class HarrisCornerDetector implements CornerDetectorInterface {
         return Core.minMaxLoc(resultOfCornerHarris).maxVal * 0.01;
     }
 
-    // Find Harris corner points by using depth-first search in the image, because these points form regions
-    private List<PointCluster> findPossibleCornerRegions(Mat harrisImage, double threshold) {
-        List<PointCluster> pointClusters = new ArrayList<>();
-        boolean[][] visitedPoints = new boolean[harrisImage.height()][harrisImage.width()];
-
-        for (int i = 0; i < harrisImage.height(); i++) {
-            for (int j = 0; j < harrisImage.width(); j++) {
-                if (visitedPoints[i][j]) continue;
-                if (harrisImage.get(i, j)[0] > threshold) {
-                    PointCluster pointCluster = new PointCluster();
-                    pointClusters.add(pointCluster);
-                    doDepthFirstSearchToFindCornerRegions(harrisImage, i, j, threshold, visitedPoints, pointClusters);
-                }
-            }
-        }
-
-        return pointClusters;
-    }
+    // Finds the regions of Harris corner points (4-connected points above the threshold) and
+    // returns their centroids, truncated to whole pixels
+    private List<Ponto> findCentroidsOfPossibleCornerRegions(Mat harrisImage, double threshold) {
+        Mat binaryImage = new Mat();
+        Imgproc.threshold(harrisImage, binaryImage, threshold, 255, Imgproc.THRESH_BINARY);
+        binaryImage.convertTo(binaryImage, CvType.CV_8U);
 
-    private void doDepthFirstSearchToFindCornerRegions(Mat image, int line, int column, double threshold, boolean[][] visitedPoints, List<PointCluster> clusters) {
-        if (line < 0 || column < 0 || line >= image.height() || column >= image.width()) return;
-        if (visitedPoints[line][column]) return;
-        visitedPoints[line][column] = true;
-
-        if (image.get(line, column)[0] > threshold) {
-            clusters.get(clusters.size() -1).add(new Ponto(column, line));
-            doDepthFirstSearchToFindCornerRegions(image, line - 1, column, threshold, visitedPoints, clusters);
-            doDepthFirstSearchToFindCornerRegions(image, line + 1, column, threshold, visitedPoints, clusters);
-            doDepthFirstSearchToFindCornerRegions(image, line, column - 1, threshold, visitedPoints, clusters);
-            doDepthFirstSearchToFindCornerRegions(image, line, column + 1, threshold, visitedPoints, clusters);
-        }
-    }
+        Mat labels = new Mat();
+        Mat stats = new Mat();
+        Mat centroids = new Mat();
+        int numberOfLabels = Imgproc.connectedComponentsWithStats(binaryImage, labels, stats, centroids, 4, CvType.CV_32S);
+        double[] centroidCoordinates = new double[numberOfLabels * 2];
+        centroids.get(0, 0, centroidCoordinates);
 
-    private List<Ponto> getCentroidsFrom(List<PointCluster> cornerPointsClusters) {
         List<Ponto> possibleCenters = new ArrayList<>();
-        for (PointCluster pointCluster : cornerPointsClusters) {
-            possibleCenters.add(pointCluster.getCentroid());
+        // Label 0 is the background
+        for (int label = 1; label < numberOfLabels; label++) {
+            // The small value makes up for rounding errors on centroids that are whole pixels
+            int x = (int) Math.floor(centroidCoordinates[2 * label] + 1e-6);
+            int y = (int) Math.floor(centroidCoordinates[2 * label + 1] + 1e-6);
+            possibleCenters.add(new Ponto(x, y));
         }
+
+        binaryImage.release();
+        labels.release();
+        stats.release();
+        centroids.release();
         return possibleCenters;
     }
 
@@ -0,0 +1,248 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfFloat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.video.Video;
+
+import java.util.Arrays;
+
+/**
+ * Follows the board corners from one frame to the next with pyramidal
+ * Lucas-Kanade optical flow, which is much cheaper than detecting them again
+ * with the CornerDetector.
+ *
+ * When the reference is set, the strongest features (grid intersections, the
+ * edges of the stones) are found in the region of interest around each corner.
+ * In the next frame these features are followed inside a region around the
+ * corner large enough for it to move by MAXIMUM_DISPLACEMENT, and the corner
+ * is moved by the median displacement of its features. That frame and the new
+ * positions of the corners then become the reference.
+ *
+ * The tracking fails, and the corners should be detected again, when:
+ * - a corner has fewer than MINIMUM_NUMBER_OF_FEATURES features that were
+ *   followed with an error below MAXIMUM_FLOW_ERROR;
+ * - less than MINIMUM_AGREEMENT of the features of a corner moved like their
+ *   median, which happens when something moves over the corner, like a hand;
+ * - a corner moved more than MAXIMUM_DISPLACEMENT;
+ * - the corners were already followed MAXIMUM_NUMBER_OF_TRACKED_FRAMES times
+ *   since they were set, so the small errors of the flow don't accumulate.
+ *
+ * The images can be camera frames (RGBA) or BGR images. Only the regions
+ * around the corners are converted to grayscale.
+ */
+public class OpticalFlowCornerTracker {
+
+    private static final int MAXIMUM_NUMBER_OF_FEATURES = 12;
+    private static final int MINIMUM_NUMBER_OF_FEATURES = 4;
+    private static final double FEATURE_QUALITY = 0.05;
+    private static final double MINIMUM_DISTANCE_BETWEEN_FEATURES = 5;
+    // Average difference of the pixels around a feature in both frames, from 0 to 255
+    private static final double MAXIMUM_FLOW_ERROR = 20;
+    // Distance in pixels from the median displacement within which a feature agrees with it
+    private static final double MAXIMUM_DISAGREEMENT = 2;
+    private static final double MINIMUM_AGREEMENT = 0.6;
+    private static final int MAXIMUM_DISPLACEMENT = CornerDetector.RADIUS_OF_REGION_OF_INTEREST;
+    private static final int MAXIMUM_NUMBER_OF_TRACKED_FRAMES = 10;
+    private static final Size WINDOW_SIZE = new Size(21, 21);
+    private static final int MAXIMUM_PYRAMID_LEVEL = 3;
+
+    private boolean hasReference = false;
+    private int numberOfTrackedFrames = 0;
+    private int referenceWidth;
+    private int referenceHeight;
+    private Point[] cornerPositions = new Point[4];
+    private Rect[] regions = new Rect[4];
+    // Grayscale images of the regions around the corners in the reference frame and in the
+    // frame being tracked, reused between the frames
+    private Mat[] referenceRegionImages = new Mat[4];
+    private Mat[] regionImages = new Mat[4];
+    // Features of each corner in the reference, in the coordinates of its region
+    private MatOfPoint2f[] referenceFeatures = new MatOfPoint2f[4];
+    // Outputs of the feature detection and of the optical flow, reused between the corners and
+    // the frames
+    private MatOfPoint detectedFeatures = new MatOfPoint();
+    private MatOfPoint2f features = new MatOfPoint2f();
+    private MatOfByte status = new MatOfByte();
+    private MatOfFloat error = new MatOfFloat();
+    private String reasonOfLastFailure = null;
+
+    public OpticalFlowCornerTracker() {
+        for (int i = 0; i < 4; i++) {
+            referenceRegionImages[i] = new Mat();
+            regionImages[i] = new Mat();
+            referenceFeatures[i] = new MatOfPoint2f();
+        }
+    }
+
+    /**
+     * Sets the positions of the corners in the image, usually found by the corner detectors.
+     * They are followed from this image on.
+     */
+    public void setReference(Mat image, Corner[] corners) {
+        Point[] positions = new Point[4];
+        for (int i = 0; i < 4; i++) {
+            positions[i] = new Point(corners[i].getX(), corners[i].getY());
+        }
+        updateReference(image, positions);
+        numberOfTrackedFrames = 0;
+    }
+
+    /**
+     * Discards the reference, so the corners are not followed until it's set again.
+     */
+    public void reset() {
+        hasReference = false;
+        numberOfTrackedFrames = 0;
+    }
+
+    /**
+     * Follows the corners from the reference to the image, which becomes the new reference.
+     *
+     * @return the new positions of the corners, or null if they could not be followed reliably
+     *         and must be detected again, in which case the reference is discarded
+     */
+    public Point[] track(Mat image) {
+        if (!hasReference) {
+            return fail("there is no reference");
+        }
+        if (numberOfTrackedFrames >= MAXIMUM_NUMBER_OF_TRACKED_FRAMES) {
+            return fail("the corners were followed for " + numberOfTrackedFrames + " frames");
+        }
+        if (image.cols() != referenceWidth || image.rows() != referenceHeight) {
+            return fail("the size of the image changed");
+        }
+
+        Point[] newCornerPositions = new Point[4];
+        for (int i = 0; i < 4; i++) {
+            if (referenceFeatures[i].rows() < MINIMUM_NUMBER_OF_FEATURES) {
+                return fail("only " + referenceFeatures[i].rows() + " features were found around corner " + i);
+            }
+            convertToGrayscale(new Mat(image, regions[i]), regionImages[i]);
+            Video.calcOpticalFlowPyrLK(referenceRegionImages[i], regionImages[i], referenceFeatures[i], features,
+                status, error, WINDOW_SIZE, MAXIMUM_PYRAMID_LEVEL);
+
+            Point displacement = getDisplacementOfFeatures(i, referenceFeatures[i].toArray(), features.toArray(),
+                status.toArray(), error.toArray());
+            if (displacement == null) return null;
+            newCornerPositions[i] = new Point(cornerPositions[i].x + displacement.x, cornerPositions[i].y + displacement.y);
+        }
+
+        updateReference(image, newCornerPositions);
+        numberOfTrackedFrames++;
+        return newCornerPositions;
+    }
+
+    /**
+     * Median displacement of the features of a corner, or null if the features don't follow it
+     * reliably.
+     */
+    private Point getDisplacementOfFeatures(int corner, Point[] referenceFeatures, Point[] features, byte[] status, float[] error) {
+        double[] displacementsX = new double[features.length];
+        double[] displacementsY = new double[features.length];
+        int numberOfFollowedFeatures = 0;
+        for (int i = 0; i < features.length; i++) {
+            if (status[i] == 0 || error[i] > MAXIMUM_FLOW_ERROR) continue;
+            displacementsX[numberOfFollowedFeatures] = features[i].x - referenceFeatures[i].x;
+            displacementsY[numberOfFollowedFeatures] = features[i].y - referenceFeatures[i].y;
+            numberOfFollowedFeatures++;
+        }
+        if (numberOfFollowedFeatures < MINIMUM_NUMBER_OF_FEATURES) {
+            fail("only " + numberOfFollowedFeatures + " features of corner " + corner + " were followed");
+            return null;
+        }
+
+        Point median = new Point(
+            getMedianOf(Arrays.copyOf(displacementsX, numberOfFollowedFeatures)),
+            getMedianOf(Arrays.copyOf(displacementsY, numberOfFollowedFeatures))
+        );
+        int numberOfAgreeingFeatures = 0;
+        for (int i = 0; i < numberOfFollowedFeatures; i++) {
+            if (Math.hypot(displacementsX[i] - median.x, displacementsY[i] - median.y) <= MAXIMUM_DISAGREEMENT) {
+                numberOfAgreeingFeatures++;
+            }
+        }
+        if (numberOfAgreeingFeatures < MINIMUM_NUMBER_OF_FEATURES
+                || numberOfAgreeingFeatures < MINIMUM_AGREEMENT * numberOfFollowedFeatures) {
+            fail("only " + numberOfAgreeingFeatures + " of " + numberOfFollowedFeatures + " features of corner "
+                + corner + " moved together");
+            return null;
+        }
+        if (Math.hypot(median.x, median.y) > MAXIMUM_DISPLACEMENT) {
+            fail("corner " + corner + " moved too much");
+            return null;
+        }
+        return median;
+    }
+
+    private double getMedianOf(double[] values) {
+        Arrays.sort(values);
+        int middle = values.length / 2;
+        return values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+    }
+
+    // The features are looked for in the region of interest of the corner detector, and followed
+    // in a region that is larger by MAXIMUM_DISPLACEMENT on each side
+    private void updateReference(Mat image, Point[] positions) {
+        for (int i = 0; i < 4; i++) {
+            cornerPositions[i] = positions[i];
+            regions[i] = getRegionAround(positions[i], CornerDetector.RADIUS_OF_REGION_OF_INTEREST + MAXIMUM_DISPLACEMENT, image);
+            convertToGrayscale(new Mat(image, regions[i]), referenceRegionImages[i]);
+
+            Rect regionOfInterest = getRegionAround(positions[i], CornerDetector.RADIUS_OF_REGION_OF_INTEREST, image);
+            Mat referenceRegionOfInterest = new Mat(referenceRegionImages[i], new Rect(regionOfInterest.x - regions[i].x,
+                regionOfInterest.y - regions[i].y, regionOfInterest.width, regionOfInterest.height));
+            Imgproc.goodFeaturesToTrack(referenceRegionOfInterest, detectedFeatures, MAXIMUM_NUMBER_OF_FEATURES,
+                FEATURE_QUALITY, MINIMUM_DISTANCE_BETWEEN_FEATURES);
+            referenceRegionOfInterest.release();
+            Point[] featurePoints = detectedFeatures.toArray();
+            for (Point feature : featurePoints) {
+                feature.x += regionOfInterest.x - regions[i].x;
+                feature.y += regionOfInterest.y - regions[i].y;
+            }
+            referenceFeatures[i].fromArray(featurePoints);
+        }
+        referenceWidth = image.cols();
+        referenceHeight = image.rows();
+        hasReference = true;
+    }
+
+    private Rect getRegionAround(Point position, int radius, Mat image) {
+        int x = Math.max(0, Math.min(image.cols() - 1, (int)Math.round(position.x) - radius));
+        int y = Math.max(0, Math.min(image.rows() - 1, (int)Math.round(position.y) - radius));
+        int width = Math.min(image.cols() - x, 2 * radius);
+        int height = Math.min(image.rows() - y, 2 * radius);
+        return new Rect(x, y, width, height);
+    }
+
+    private void convertToGrayscale(Mat region, Mat grayscaleRegion) {
+        if (region.channels() == 4) {
+            Imgproc.cvtColor(region, grayscaleRegion, Imgproc.COLOR_RGBA2GRAY);
+        } else if (region.channels() == 3) {
+            Imgproc.cvtColor(region, grayscaleRegion, Imgproc.COLOR_BGR2GRAY);
+        } else {
+            region.copyTo(grayscaleRegion);
+        }
+        region.release();
+    }
+
+    private Point[] fail(String reason) {
+        reasonOfLastFailure = reason;
+        hasReference = false;
+        return null;
+    }
+
+    /**
+     * Why the last call to track() returned null.
+     */
+    public String getReasonOfLastFailure() {
+        return reasonOfLastFailure;
+    }
+
+}
@@ -8,6 +8,8 @@ import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
 import org.opencv.core.RotatedRect;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
@@ -19,6 +21,10 @@ public class EllipseChecker
 {
     private Mat image;
     private MatOfPoint approximatedContour = null;
+    // Masks reused for each contour checked
+    private final Mat maskContour = new Mat();
+    private final Mat maskEllipse = new Mat();
+    private final Mat leftover = new Mat();
 
     public void setImage(Mat image)
     {
@@ -66,16 +72,23 @@ public class EllipseChecker
 
     private boolean isEllipseAGoodFitAgainstContour(RotatedRect ellipse, MatOfPoint contour)
     {
+        // Only the region around the contour and the ellipse is checked, because
+        // the rest of the image is empty in both masks
+        Rect region = getRegionAround(contour, ellipse);
+        if (region.width <= 0 || region.height <= 0) return false;
+        Point offset = new Point(-region.x, -region.y);
+
         // We plot a mask of the contour we are checking
-        Mat maskContour = new Mat(image.rows(), image.cols(), CvType.CV_8U, new Scalar(0));
+        maskContour.create(region.height, region.width, CvType.CV_8U);
+        maskContour.setTo(new Scalar(0));
         List<MatOfPoint> contours = new ArrayList<>();
         contours.add(contour);
-        Imgproc.drawContours(maskContour, contours, 0, new Scalar(255), -1);
+        Imgproc.drawContours(maskContour, contours, 0, new Scalar(255), -1, Imgproc.LINE_8, new Mat(), Integer.MAX_VALUE, offset);
         // We then plot the found ellipse
-        Mat maskEllipse = new Mat(image.rows(), image.cols(), CvType.CV_8U, new Scalar(0));
-        Imgproc.ellipse(maskEllipse, ellipse, new Scalar(255), -1);
-        // we check the pixels that are only in one or the other image
-        Mat leftover = new Mat(image.rows(), image.cols(), CvType.CV_8U, new Scalar(0));
+        maskEllipse.create(region.height, region.width, CvType.CV_8U);
+        maskEllipse.setTo(new Scalar(0));
+        RotatedRect ellipseInRegion = new RotatedRect(new Point(ellipse.center.x + offset.x, ellipse.center.y + offset.y), ellipse.size, ellipse.angle);
+        Imgproc.ellipse(maskEllipse, ellipseInRegion, new Scalar(255), -1);
         // The leftover is the difference between the contour found and the ellipse we're trying to fit.
         // The less leftover there is, the more the ellipse fits the contour.
         Core.bitwise_xor(maskContour, maskEllipse, leftover);
@@ -87,4 +100,18 @@ public class EllipseChecker
         return leftoverRatio < 0.15;
     }
 
+    // Union of the bounding boxes of the contour and of the ellipse, with a small
+    // margin for the rounding of the drawing, limited to the image
+    private Rect getRegionAround(MatOfPoint contour, RotatedRect ellipse)
+    {
+        Rect contourBox = Imgproc.boundingRect(contour);
+        Rect ellipseBox = ellipse.boundingRect();
+        int margin = 2;
+        int left = Math.max(0, Math.min(contourBox.x, ellipseBox.x) - margin);
+        int top = Math.max(0, Math.min(contourBox.y, ellipseBox.y) - margin);
+        int right = Math.min(image.cols(), Math.max(contourBox.x + contourBox.width, ellipseBox.x + ellipseBox.width) + margin);
+        int bottom = Math.min(image.rows(), Math.max(contourBox.y + contourBox.height, ellipseBox.y + ellipseBox.height) + margin);
+        return new Rect(left, top, right - left, bottom - top);
+    }
+
 }
\ No newline at end of file
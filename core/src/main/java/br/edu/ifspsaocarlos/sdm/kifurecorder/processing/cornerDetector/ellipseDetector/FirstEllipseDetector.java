@@ -41,8 +41,12 @@ import java.util.Random;
 public class FirstEllipseDetector implements EllipseDetectorInterface {
 
     private String filePrefix;
-    private Mat image;
     private List<MatOfPoint> approximatedContours;
+    private final EllipseChecker ellipseChecker = new EllipseChecker();
+    // Images reused between the calls
+    private final Mat blurredImage = new Mat();
+    private final Mat imageWithBordersDetected = new Mat();
+    private final Mat kernel = Mat.ones(3, 3, CvType.CV_32F);
 
     public String getName() {
         return "first ellipse detector";
@@ -54,13 +58,12 @@ public class FirstEllipseDetector implements EllipseDetectorInterface {
 
     // https://stackoverflow.com/questions/35121045/find-cost-of-ellipse-in-opencv
     public List<RotatedRect> detectEllipsesIn(Mat image) {
-        this.image = image.clone();
         Mat imageWithEllipses = image.clone();
         approximatedContours = new ArrayList<>();
 
-        Mat preprocessedImage = preprocessImage(image.clone());
+        Mat preprocessedImage = preprocessImage(image);
         List<MatOfPoint> contours = detectContoursIn(preprocessedImage);
-        outputImageWithContours(image, contours, filePrefix + "_all_contours.png");
+        // outputImageWithContours(image, contours, filePrefix + "_all_contours.png");
         List<RotatedRect> ellipses = new ArrayList<>();
         // Ir more than 5 contours were found in the scene, there's something more than
         // stones and the board in the scene
@@ -69,8 +72,7 @@ public class FirstEllipseDetector implements EllipseDetectorInterface {
             return ellipses;
         }
 
-        EllipseChecker ellipseChecker = new EllipseChecker();
-        ellipseChecker.setImage(this.image);
+        ellipseChecker.setImage(image);
 
         for (int i = 0; i < contours.size(); i++) {
             RotatedRect ellipse = ellipseChecker.getEllipseFrom(contours.get(i));
@@ -93,23 +95,25 @@ public class FirstEllipseDetector implements EllipseDetectorInterface {
 
     private Mat preprocessImage(Mat image) {
         // Blur image to smooth noise
-        Imgproc.blur(image, image, new Size(3, 3));
-        // Imgcodecs.imwrite(filePrefix + "_preprocessed_image_0.png", image);
+        // The image is copied because it may be a region of a larger image, whose pixels
+        // around the region would be used by the blur
+        image.copyTo(blurredImage);
+        Imgproc.blur(blurredImage, blurredImage, new Size(3, 3));
+        // Imgcodecs.imwrite(filePrefix + "_preprocessed_image_0.png", blurredImage);
         // Detect borders with Canny filter
-        image = detectBordersIn(image);
+        image = detectBordersIn(blurredImage);
         // Imgcodecs.imwrite(filePrefix + "_preprocessed_image_1.png", image);
-        Imgproc.dilate(image, image, Mat.ones(3, 3, CvType.CV_32F), new Point(-1, -1), 3);
-        Imgproc.erode(image, image, Mat.ones(3, 3, CvType.CV_32F), new Point(-1, -1), 3);
+        Imgproc.dilate(image, image, kernel, new Point(-1, -1), 3);
+        Imgproc.erode(image, image, kernel, new Point(-1, -1), 3);
         // Imgcodecs.imwrite(filePrefix + "_preprocessed_image_2.png", image);
         // Invert regions
         Core.bitwise_not(image, image);
-        Imgproc.erode(image, image, Mat.ones(3, 3, CvType.CV_32F), new Point(-1, -1), 1);
+        Imgproc.erode(image, image, kernel, new Point(-1, -1), 1);
         // Imgcodecs.imwrite(filePrefix + "_preprocessed_image_3.png", image);
         return image;
     }
 
     private Mat detectBordersIn(Mat image) {
-        Mat imageWithBordersDetected = new Mat();
         Imgproc.Canny(image, imageWithBordersDetected, 50, 150);
         return imageWithBordersDetected;
     }
@@ -1,5 +1,6 @@
 package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.ellipseDetector;
 
+import org.opencv.core.Core;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfFloat;
@@ -32,7 +33,14 @@ public class SecondEllipseDetector implements EllipseDetectorInterface
 {
     private static final int FILTER_UNDER = 0;
     private static final int FILTER_OVER = 1;
-    private static final EllipseChecker ellipseChecker = new EllipseChecker();
+    private final EllipseChecker ellipseChecker = new EllipseChecker();
+    // Images reused between the calls
+    private final Mat blurredImage = new Mat();
+    private final Mat grayscaleImage = new Mat();
+    private final Mat adjustedImage = new Mat();
+    private final Mat filteredImage = new Mat();
+    private final Mat dilatedImage = new Mat();
+    private final Mat dilationKernel = Mat.ones(5, 5, CvType.CV_8U);
 
     private String filePrefix;
     private Mat originalImage;
@@ -54,9 +62,7 @@ public class SecondEllipseDetector implements EllipseDetectorInterface
         Mat preprocessedImage = preprocessImage(image);
 
         int numberOfBins = 16;
-        Mat histogram = getHistogramFrom(preprocessedImage, numberOfBins);
-        System.out.println("histogram with 16 bins = ");
-        System.out.println(histogram.t().dump());
+        int[] histogram = getHistogramFrom(preprocessedImage, numberOfBins);
 
         // Centroid 0 centers around the dark pixels and centroid 1 around the light ones
         int numberOfClusters = 3;
@@ -75,8 +81,7 @@ public class SecondEllipseDetector implements EllipseDetectorInterface
 
     private Mat preprocessImage(Mat image)
     {
-        Mat processedImage = image.clone();
-        processedImage = blur(processedImage);
+        Mat processedImage = blur(image);
         processedImage = convertToGrayscale(processedImage);
         processedImage = adjustBrightnessAndContrast(processedImage);
         return processedImage;
@@ -86,7 +91,9 @@ public class SecondEllipseDetector implements EllipseDetectorInterface
     // good to smooth out imperfections and focus on the colors
     private Mat blur(Mat image)
     {
-        Mat blurredImage = image.clone();
+        // The image is copied because it may be a region of a larger image, whose pixels
+        // around the region would be used by the blur
+        image.copyTo(blurredImage);
         Imgproc.blur(blurredImage, blurredImage, new Size(5, 5));
         Imgproc.blur(blurredImage, blurredImage, new Size(3, 3));
         Imgproc.blur(blurredImage, blurredImage, new Size(3, 3));
@@ -96,7 +103,6 @@ public class SecondEllipseDetector implements EllipseDetectorInterface
 
     private Mat convertToGrayscale(Mat image)
     {
-        Mat grayscaleImage = new Mat();
         Imgproc.cvtColor(image, grayscaleImage, Imgproc.COLOR_BGR2GRAY, 1); // 1 channel
         // Imgcodecs.imwrite(filePrefix + "_preprocessed_image_2.png", grayscaleImage);
         return grayscaleImage;
@@ -105,7 +111,6 @@ public class SecondEllipseDetector implements EllipseDetectorInterface
     // https://docs.opencv.org/3.4/d3/dc1/tutorial_basic_linear_transform.html
     private Mat adjustBrightnessAndContrast(Mat image)
     {
-        Mat adjustedImage = new Mat();
         int rType = -1;
         double alpha = 1.4; // contrast
         int beta = -50; // brightness
@@ -116,7 +121,7 @@ public class SecondEllipseDetector implements EllipseDetectorInterface
     }
 
     // https://www.programcreek.com/java-api-examples/?class=org.opencv.imgproc.Imgproc&method=calcHist
-    private Mat getHistogramFrom(Mat image, int numberOfBins)
+    private int[] getHistogramFrom(Mat image, int numberOfBins)
     {
         Mat histogram = new Mat();
         MatOfInt channels = new MatOfInt(0);
@@ -126,15 +131,22 @@ public class SecondEllipseDetector implements EllipseDetectorInterface
 
         Imgproc.calcHist(new ArrayList<Mat>(Arrays.asList(image)), channels, mask, histogram, histogramSize, ranges);
 
-        return histogram;
+        // The bins are read all at once, because the clustering reads them many times
+        float[] bins = new float[numberOfBins];
+        histogram.get(0, 0, bins);
+        int[] pixelsInEachBin = new int[numberOfBins];
+        for (int bin = 0; bin < numberOfBins; bin++) {
+            pixelsInEachBin[bin] = (int)bins[bin];
+        }
+        return pixelsInEachBin;
     }
 
-    private int[] clusterizeHistogramAndReturnCentroids(Mat histogram, int numberOfClusters)
+    private int[] clusterizeHistogramAndReturnCentroids(int[] histogram, int numberOfClusters)
     {
         // There should be at least 2 clusters
         if (numberOfClusters < 2) return null;
 
-        int numberOfRows = histogram.rows();
+        int numberOfRows = histogram.length;
         int[] centroids = new int[numberOfClusters];
         int[] oldCentroids = new int[numberOfClusters];
 
@@ -165,7 +177,7 @@ public class SecondEllipseDetector implements EllipseDetectorInterface
                         nearestCluster = cluster;
                     }
                 }
-                sumOfElementsOfEachCluster[ nearestCluster ] += histogram.get(row, 0)[0];
+                sumOfElementsOfEachCluster[ nearestCluster ] += histogram[row];
                 labels[row] = nearestCluster;
             }
 
@@ -178,7 +190,7 @@ public class SecondEllipseDetector implements EllipseDetectorInterface
                 for (int row = 0; row < numberOfRows; row++) {
                     if (labels[row] != cluster) continue;
 
-                    sum += histogram.get(row, 0)[0];
+                    sum += histogram[row];
 
                     if (sum >= medianOfCluster) {
                         // System.out.println("Centroid " + cluster + " is now " + row);
@@ -191,17 +203,12 @@ public class SecondEllipseDetector implements EllipseDetectorInterface
 
         }
 
-        System.out.println("Centroids = ");
-        for (int i = 0; i < numberOfClusters; i++) {
-            System.out.println(i + " - " + centroids[i]);
-        }
-
         return centroids;
     }
 
-    private int[][] calculateDistanceOfEachRowToCentroids(Mat histogram, int[] centroids)
+    private int[][] calculateDistanceOfEachRowToCentroids(int[] histogram, int[] centroids)
     {
-        int numberOfRows = histogram.rows();
+        int numberOfRows = histogram.length;
         int numberOfClusters = centroids.length;
         int[][] distancesToCentroids = new int[numberOfClusters][numberOfRows];
 
@@ -211,12 +218,12 @@ public class SecondEllipseDetector implements EllipseDetectorInterface
             for (int row = centroids[cluster] - 1; row >= 0; row--) {
                 distancesToCentroids[cluster][row] =
                     distancesToCentroids[cluster][row + 1]
-                    + (int)histogram.get(row, 0)[0] * (centroids[cluster] - row);
+                    + histogram[row] * (centroids[cluster] - row);
             }
-            for (int row = centroids[cluster] + 1; row < histogram.rows(); row++) {
+            for (int row = centroids[cluster] + 1; row < numberOfRows; row++) {
                 distancesToCentroids[cluster][row] =
                     distancesToCentroids[cluster][row - 1]
-                    + (int)histogram.get(row, 0)[0] * (row - centroids[cluster]);
+                    + histogram[row] * (row - centroids[cluster]);
             }
         }
 
@@ -235,37 +242,25 @@ public class SecondEllipseDetector implements EllipseDetectorInterface
     {
         Mat filteredImage = getFilteredImage(centroid * 16, FILTER_OVER, image);
         // Imgcodecs.imwrite(filePrefix + "_preprocessed_image_3_light_filter.png", filteredImage);
-        Mat dilatedImage = new Mat();
-        Imgproc.dilate(filteredImage, dilatedImage, Mat.ones(5, 5, CvType.CV_8U));
+        Imgproc.dilate(filteredImage, dilatedImage, dilationKernel);
         // Imgcodecs.imwrite(filePrefix + "_preprocessed_image_3_light_filter_dilated.png", dilatedImage);
 
         return findPossibleEllipsesIn(dilatedImage, "light");
     }
 
     // There are 256 possible pixel intensities and the histogram has 16 bins,
-    // so each bin represents a reange of 16 pixels
+    // so each bin represents a reange of 16 pixels. The pixels that pass the
+    // filter (below or over the threshold, inclusive) become white and the others black.
     private Mat getFilteredImage(int threshold, int filter, Mat image)
     {
-        Mat filteredImage = image.clone();
-
-        for (int i = 0; i < image.rows(); i++) {
-            for (int j = 0; j < image.cols(); j++) {
-                if (doesPixelPassFilter(image.get(i, j)[0], threshold, filter)) {
-                    filteredImage.put(i, j, new double[]{ 255, 255, 255 });
-                } else {
-                    filteredImage.put(i, j, new double[]{ 0, 0, 0 });
-                }
-            }
+        if (filter == FILTER_UNDER) {
+            Core.inRange(image, new Scalar(0), new Scalar(threshold), filteredImage);
+        } else {
+            Core.inRange(image, new Scalar(threshold), new Scalar(255), filteredImage);
         }
-
         return filteredImage;
     }
 
-    private boolean doesPixelPassFilter(double pixelValue, int threshold, int filter)
-    {
-        return filter == FILTER_UNDER ? pixelValue <= threshold : pixelValue >= threshold;
-    }
-
     private List<RotatedRect> findPossibleEllipsesIn(Mat image, String suffix)
     {
         List<MatOfPoint> contours = findContoursIn(image);
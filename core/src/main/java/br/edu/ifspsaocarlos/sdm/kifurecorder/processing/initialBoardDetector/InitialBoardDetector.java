@@ -1,7 +1,5 @@
 package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.initialBoardDetector;
 
-import android.util.Log;
-
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
@@ -63,7 +61,7 @@ public class InitialBoardDetector {
         List<MatOfPoint> contours = detectContours(imageWithBordersInEvidence);
 
         if (contours.isEmpty()) {
-            Log.i("KifuRecorder", "> Image processing: contours were not found.");
+            System.out.println("> Image processing: contours were not found.");
             return false;
         }
 
@@ -73,7 +71,7 @@ public class InitialBoardDetector {
         List<MatOfPoint> quadrilaterals = detectQuadrilaterals(contours);
 
         if (quadrilaterals.isEmpty()) {
-            Log.i("KifuRecorder", "> Image processing: quadrilaterals were not found.");
+            System.out.println("> Image processing: quadrilaterals were not found.");
             return false;
         }
 
@@ -83,7 +81,7 @@ public class InitialBoardDetector {
         MatOfPoint boardQuadrilateral = detectBoard(quadrilaterals);
 
         if (boardQuadrilateral == null) {
-            Log.i("KifuRecorder", "> Image processing: board quadrilateral was not found.");
+            System.out.println("> Image processing: board quadrilateral was not found.");
             return false;
         }
 
@@ -95,7 +93,7 @@ public class InitialBoardDetector {
         averageArea /= quadrilateralHierarchy.hierarchy.get(boardQuadrilateral).size();
         double boardArea = Imgproc.contourArea(boardQuadrilateral);
         double ratio = averageArea / boardArea;
-//        Log.d("KifuRecorder", "Razão entre a área dos quadrados internos e a área do tabuleiro = " + ratio);
+//        System.out.println("Razão entre a área dos quadrados internos e a área do tabuleiro = " + ratio);
 
         // Determines the dimension of the board according to the ratio between the area of the
         // internal quadrilaterals and the area of the board quadrilateral
@@ -127,7 +125,7 @@ public class InitialBoardDetector {
         for (int i = 0; i < positionOfBoardInImage.rows(); ++i) {
             for (int j = 0; j < positionOfBoardInImage.cols(); ++j) {
                 double[] valor = positionOfBoardInImage.get(i, j);
-                Log.d("KifuRecorder", "(" + i + ", " + j + ") = " + valor[0] + ", " + valor[1]);
+                System.out.println("(" + i + ", " + j + ") = " + valor[0] + ", " + valor[1]);
             }
         }
         */
@@ -167,7 +165,7 @@ public class InitialBoardDetector {
         List<MatOfPoint> contours = new ArrayList<>();
         Mat hierarchy = new Mat();
         Imgproc.findContours(imageWithBordersInEvidence, contours, hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE, new Point(0, 0));
-        Log.d("kifu-recorder", "Number of contours found: " + contours.size());
+        System.out.println("Number of contours found: " + contours.size());
 
         // Remove very small contours which are probably noise
         for (Iterator<MatOfPoint> it = contours.iterator(); it.hasNext();) {
@@ -214,7 +212,7 @@ public class InitialBoardDetector {
             }
         }
 
-        Log.d("kifu-recorder", "Number of quadrilaterals found: " + quadrilaterals.size());
+        System.out.println("Number of quadrilaterals found: " + quadrilaterals.size());
         return quadrilaterals;
     }
 
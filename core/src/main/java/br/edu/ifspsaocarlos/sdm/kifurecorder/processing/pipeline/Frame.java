@@ -0,0 +1,55 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Board;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.FrameLog;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.MotionDetector;
+
+/**
+ * A camera frame and the results produced for it by each stage of the
+ * processing pipeline. A frame is processed by a single stage at a time, so
+ * its attributes don't need any synchronization.
+ */
+public class Frame {
+
+    // Copy of the camera image, owned by this frame (RGBA)
+    public final Mat image;
+    // Time at which the image was captured, in nanoseconds
+    public final long timestamp;
+    public final FrameLog log;
+
+    // Results of the corner tracking stage
+    public MotionDetector.Motion motion;
+    public Mat boardPositionInImage;
+    public MatOfPoint boardContour;
+    // Result of the warp stage
+    public Mat orthogonalBoardImage;
+    // Results of the stone detection stage
+    public Board detectedBoard;
+    public double detectionConfidence = 1;
+    // Result of the game update stage
+    public boolean wasMoveAdded = false;
+    // Exception thrown by the stage that ended the processing of the frame, if any
+    public RuntimeException failure;
+
+    public Frame(Mat image, long timestamp, FrameLog log) {
+        this.image = image;
+        this.timestamp = timestamp;
+        this.log = log;
+    }
+
+    public long getNumber() {
+        return log.getFrameNumber();
+    }
+
+    /**
+     * Releases the camera image copy. The other images may still be referenced by the overlay
+     * that is drawn on the screen, so they are left to the garbage collector.
+     */
+    public void release() {
+        image.release();
+    }
+
+}
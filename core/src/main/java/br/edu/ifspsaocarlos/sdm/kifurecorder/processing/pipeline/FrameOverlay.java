@@ -0,0 +1,51 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Board;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Move;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.Drawer;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.ImageUtils;
+
+/**
+ * What is drawn over the camera preview: the orthogonal board image, the
+ * board contour and the current game state. The pipeline stages publish a new
+ * overlay whenever one of these changes and the camera callback draws the most
+ * recently published one on every frame. An overlay is never modified after it
+ * is created, so it can be shared between threads.
+ */
+public class FrameOverlay {
+
+    private final Mat orthogonalBoardImage;
+    private final MatOfPoint boardContour;
+    private final boolean isBoardLost;
+    private final Board board;
+    private final Move lastMove;
+
+    public FrameOverlay(Mat orthogonalBoardImage, MatOfPoint boardContour, boolean isBoardLost, Board board, Move lastMove) {
+        this.orthogonalBoardImage = orthogonalBoardImage;
+        this.boardContour = boardContour;
+        this.isBoardLost = isBoardLost;
+        this.board = board;
+        this.lastMove = lastMove;
+    }
+
+    public Mat getOrthogonalBoardImage() {
+        return orthogonalBoardImage;
+    }
+
+    public void draw(Mat image) {
+        int size = ImageUtils.ORTHOGONAL_BOARD_IMAGE_SIZE;
+        if (orthogonalBoardImage != null) {
+            orthogonalBoardImage.copyTo(image.rowRange(0, size).colRange(0, size));
+        }
+        if (isBoardLost) {
+            Drawer.drawLostBoardContour(image, boardContour);
+        } else {
+            Drawer.drawBoardContour(image, boardContour);
+        }
+        Drawer.drawBoard(image, board, 0, size, 400, lastMove);
+    }
+
+}
@@ -0,0 +1,205 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Processes camera frames in a sequence of stages (for example: corner tracking,
+ * warp, stone detection, game update and persistence). Each stage runs on its
+ * own worker thread and receives frames from the previous one through a
+ * "latest frame wins" FrameQueue, so different frames can be in different
+ * stages at the same time and a slow stage never blocks the camera.
+ */
+public class FramePipeline {
+
+    public interface FrameCompletionListener {
+        /**
+         * Called when a frame leaves the pipeline, either after the last stage or when a stage
+         * decided its processing should end. Runs on the thread of the stage that completed it.
+         */
+        void onFrameCompleted(Frame frame);
+    }
+
+    private static final int QUEUE_CAPACITY = 1;
+
+    private final String name;
+    private final List<StageWorker> workers = new ArrayList<>();
+    private FrameCompletionListener completionListener;
+    private volatile boolean isRunning = false;
+
+    public FramePipeline(String name) {
+        this.name = name;
+    }
+
+    public void addStage(String stageName, PipelineStage stage) {
+        if (isRunning) {
+            throw new IllegalStateException("Stages can't be added to a running pipeline");
+        }
+        workers.add(new StageWorker(stageName, stage));
+    }
+
+    public void setFrameCompletionListener(FrameCompletionListener completionListener) {
+        this.completionListener = completionListener;
+    }
+
+    public synchronized void start() {
+        if (isRunning) return;
+        isRunning = true;
+        for (int i = 0; i < workers.size(); i++) {
+            StageWorker worker = workers.get(i);
+            worker.nextWorker = i + 1 < workers.size() ? workers.get(i + 1) : null;
+            worker.start();
+        }
+    }
+
+    /**
+     * Stops all stages and discards the frames that were still waiting to be processed.
+     */
+    public synchronized void stop() {
+        if (!isRunning) return;
+        isRunning = false;
+        for (StageWorker worker : workers) {
+            worker.interrupt();
+        }
+        for (StageWorker worker : workers) {
+            worker.join();
+            Frame frame;
+            while ((frame = worker.queue.poll()) != null) {
+                frame.release();
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    /**
+     * Hands a frame to the first stage. If the first stage is still busy with another frame, the
+     * frame that was waiting for it is discarded.
+     */
+    public void submit(Frame frame) {
+        if (!isRunning || workers.isEmpty()) {
+            frame.release();
+            return;
+        }
+        workers.get(0).enqueue(frame);
+    }
+
+    public int getNumberOfStages() {
+        return workers.size();
+    }
+
+    public String getStageName(int stage) {
+        return workers.get(stage).stageName;
+    }
+
+    public long getNumberOfDroppedFrames(int stage) {
+        return workers.get(stage).queue.getNumberOfDroppedFrames();
+    }
+
+    /**
+     * Number of frames that were dropped by a stage because it threw an exception. The exception is
+     * written to the log of the frame and kept in Frame.failure.
+     */
+    public long getNumberOfFailedFrames(int stage) {
+        return workers.get(stage).numberOfFailedFrames;
+    }
+
+    /**
+     * Processing time in milliseconds of the last frame processed by a stage.
+     */
+    public long getLastProcessingTime(int stage) {
+        return workers.get(stage).lastProcessingTime;
+    }
+
+    private void complete(Frame frame) {
+        try {
+            if (completionListener != null) {
+                completionListener.onFrameCompleted(frame);
+            }
+        } finally {
+            frame.release();
+        }
+    }
+
+    private class StageWorker implements Runnable {
+
+        private final String stageName;
+        private final PipelineStage stage;
+        private final FrameQueue queue = new FrameQueue(QUEUE_CAPACITY);
+        private StageWorker nextWorker;
+        private Thread thread;
+        private volatile long lastProcessingTime = 0;
+        // Only incremented by the thread of the stage
+        private volatile long numberOfFailedFrames = 0;
+
+        StageWorker(String stageName, PipelineStage stage) {
+            this.stageName = stageName;
+            this.stage = stage;
+        }
+
+        void start() {
+            thread = new Thread(this, name + "-" + stageName);
+            thread.start();
+        }
+
+        void interrupt() {
+            if (thread != null) thread.interrupt();
+        }
+
+        void join() {
+            if (thread == null) return;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+
+        void enqueue(Frame frame) {
+            Frame droppedFrame = queue.put(frame);
+            if (droppedFrame != null) {
+                droppedFrame.release();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (isRunning) {
+                Frame frame;
+                try {
+                    frame = queue.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+
+                long start = System.currentTimeMillis();
+                boolean shouldContinue;
+                try {
+                    shouldContinue = stage.process(frame);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    StringWriter stackTrace = new StringWriter();
+                    e.printStackTrace(new PrintWriter(stackTrace));
+                    frame.log.addToLog("Stage " + stageName + " failed: " + stackTrace);
+                    frame.failure = e;
+                    numberOfFailedFrames++;
+                    shouldContinue = false;
+                }
+                lastProcessingTime = System.currentTimeMillis() - start;
+                frame.log.addToLog("Time spent in stage " + stageName + " = " + lastProcessingTime + "ms");
+
+                if (shouldContinue && nextWorker != null && isRunning) {
+                    nextWorker.enqueue(frame);
+                } else {
+                    complete(frame);
+                }
+            }
+        }
+    }
+
+}
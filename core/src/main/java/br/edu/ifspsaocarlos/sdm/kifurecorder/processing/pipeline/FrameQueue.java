@@ -0,0 +1,61 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bounded handoff queue between two stages of the pipeline where the latest
+ * frame wins: when the queue is full, the oldest waiting frame is discarded to
+ * make room for the new one. This way a slow stage always works on the most
+ * recent frame instead of accumulating a backlog of old ones.
+ */
+public class FrameQueue {
+
+    private final int capacity;
+    private final ArrayDeque<Frame> frames;
+    private long numberOfDroppedFrames = 0;
+
+    public FrameQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        frames = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Adds a frame to the queue. Returns the frame that had to be discarded to make room for it,
+     * or null if no frame was discarded.
+     */
+    public synchronized Frame put(Frame frame) {
+        Frame droppedFrame = null;
+        if (frames.size() >= capacity) {
+            droppedFrame = frames.pollFirst();
+            numberOfDroppedFrames++;
+        }
+        frames.addLast(frame);
+        notifyAll();
+        return droppedFrame;
+    }
+
+    /**
+     * Waits until a frame is available and removes it from the queue.
+     */
+    public synchronized Frame take() throws InterruptedException {
+        while (frames.isEmpty()) {
+            wait();
+        }
+        return frames.pollFirst();
+    }
+
+    /**
+     * Removes the waiting frame, if any, without blocking.
+     */
+    public synchronized Frame poll() {
+        return frames.pollFirst();
+    }
+
+    public synchronized long getNumberOfDroppedFrames() {
+        return numberOfDroppedFrames;
+    }
+
+}
@@ -0,0 +1,11 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline;
+
+public interface PipelineStage {
+
+    /**
+     * Processes a frame. Returns true if the frame should be handed to the next stage or false
+     * if its processing ends here.
+     */
+    boolean process(Frame frame);
+
+}
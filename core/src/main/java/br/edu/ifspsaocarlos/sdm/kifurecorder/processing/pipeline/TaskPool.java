@@ -0,0 +1,151 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline;
+
+import java.util.ArrayDeque;
+
+/**
+ * Fixed set of worker threads that run a group of independent tasks at the
+ * same time, for the work of a stage that can be split, like the detection of
+ * the four corners of the board. The thread that submits the tasks runs some
+ * of them too, so a pool with N threads runs N + 1 tasks at the same time.
+ *
+ * The threads are daemons and are started with the first group of tasks, so a
+ * pool that is never used costs nothing and doesn't keep the process alive.
+ */
+public class TaskPool {
+
+    private final String name;
+    private final int numberOfThreads;
+    private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+    private boolean wereThreadsStarted = false;
+
+    public TaskPool(String name, int numberOfThreads) {
+        this.name = name;
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * Runs the tasks and waits until all of them are finished. If a task throws an exception or an
+     * error, the other tasks are still run and the first one is thrown here.
+     */
+    public void runAll(Runnable[] runnables) {
+        Group group = new Group(runnables.length);
+        synchronized (this) {
+            startThreads();
+            for (Runnable runnable : runnables) {
+                tasks.addLast(new Task(runnable, group));
+            }
+            notifyAll();
+        }
+
+        // Helps with the tasks of the group while they are not all taken by the workers
+        Task task;
+        while ((task = takeTaskOf(group)) != null) {
+            task.run();
+        }
+        group.await();
+    }
+
+    private synchronized Task takeTaskOf(Group group) {
+        for (Task task : tasks) {
+            if (task.group == group) {
+                tasks.remove(task);
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private void startThreads() {
+        if (wereThreadsStarted) return;
+        wereThreadsStarted = true;
+        for (int i = 0; i < numberOfThreads; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        Task task;
+                        synchronized (TaskPool.this) {
+                            while (tasks.isEmpty()) {
+                                try {
+                                    TaskPool.this.wait();
+                                } catch (InterruptedException e) {
+                                    return;
+                                }
+                            }
+                            task = tasks.pollFirst();
+                        }
+                        task.run();
+                    }
+                }
+            }, name + "-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private static class Task {
+
+        private final Runnable runnable;
+        private final Group group;
+
+        Task(Runnable runnable, Group group) {
+            this.runnable = runnable;
+            this.group = group;
+        }
+
+        void run() {
+            // Errors are caught too, so the worker threads survive them and the caller knows
+            Throwable throwable = null;
+            try {
+                runnable.run();
+            } catch (Throwable t) {
+                throwable = t;
+            } finally {
+                group.finish(throwable);
+            }
+        }
+    }
+
+    private static class Group {
+
+        private int numberOfPendingTasks;
+        private Throwable throwable;
+
+        Group(int numberOfTasks) {
+            numberOfPendingTasks = numberOfTasks;
+        }
+
+        synchronized void finish(Throwable throwable) {
+            if (this.throwable == null) {
+                this.throwable = throwable;
+            }
+            numberOfPendingTasks--;
+            notifyAll();
+        }
+
+        synchronized void await() {
+            boolean wasInterrupted = false;
+            while (numberOfPendingTasks > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // The tasks use objects of the caller, so it can't return before they finish
+                    wasInterrupted = true;
+                }
+            }
+            if (wasInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (throwable instanceof RuntimeException) {
+                throw (RuntimeException) throwable;
+            }
+            if (throwable instanceof Error) {
+                throw (Error) throwable;
+            }
+            if (throwable != null) {
+                throw new RuntimeException(throwable);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.similarityCalculator;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+// https://stackoverflow.com/a/13517771
+// The images are compared through their fingerprints (see ImageFingerprint),
+// which can be calculated once for the reference image and compared with the
+// fingerprints of the next images with a few bit operations.
+//
+// The check only rejects images that changed a lot: a wrong homography that
+// shows another area of the scene, or an occlusion of a large part of the
+// board. New stones, changes of brightness and small occlusions are accepted.
+// A hand over a corner is not rejected while it covers less than about a tenth
+// of the board; bright hands are rejected from about 15% of the board on and
+// dark ones only when they cover more. The threshold was tuned on synthetic
+// boards only, so the caller shouldn't rely on this to find hands.
+//
+// The thumbnail and the pixel array are reused between calls, so an instance
+// should be used by a single thread.
+public class FingerprintMatching implements SimilarityCalculatorInterface
+{
+    private static final double SIMILARITY_THRESHOULD = 0.85;
+    private int imageNumber;
+    private final Mat smallImage = new Mat();
+    private byte[] pixels = new byte[0];
+
+    public void setImageNumber(int imageNumber)
+    {
+        this.imageNumber = imageNumber;
+    }
+
+    public ImageFingerprint calculateFingerprintOf(Mat image)
+    {
+        Imgproc.resize(image, smallImage, new Size(ImageFingerprint.SIZE, ImageFingerprint.SIZE));
+        if (smallImage.depth() != CvType.CV_8U) {
+            smallImage.convertTo(smallImage, CvType.CV_8U);
+        }
+        // Imgcodecs.imwrite("processing/image" + imageNumber + "_small1.png", smallImage);
+
+        int numberOfValues = (int) smallImage.total() * smallImage.channels();
+        if (pixels.length != numberOfValues) {
+            pixels = new byte[numberOfValues];
+        }
+        smallImage.get(0, 0, pixels);
+        return new ImageFingerprint(pixels, smallImage.channels());
+    }
+
+    public double calculateSimilatiryBetween(Mat image1, Mat image2)
+    {
+        return calculateSimilatiryBetween(calculateFingerprintOf(image1), calculateFingerprintOf(image2));
+    }
+
+    public double calculateSimilatiryBetween(ImageFingerprint fingerprint1, ImageFingerprint fingerprint2)
+    {
+        return fingerprint1.similarityTo(fingerprint2);
+    }
+
+    public boolean areImagesSimilar(Mat image1, Mat image2)
+    {
+        return areImagesSimilar(calculateFingerprintOf(image1), calculateFingerprintOf(image2));
+    }
+
+    public boolean areImagesSimilar(ImageFingerprint fingerprint1, ImageFingerprint fingerprint2)
+    {
+        return calculateSimilatiryBetween(fingerprint1, fingerprint2) > SIMILARITY_THRESHOULD;
+    }
+}
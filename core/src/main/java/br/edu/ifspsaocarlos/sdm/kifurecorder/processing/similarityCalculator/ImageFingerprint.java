@@ -0,0 +1,90 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.similarityCalculator;
+
+// Perceptual hash of an image, calculated from a 16x16 thumbnail of it. For
+// each color channel (the alpha channel is ignored), the hash has:
+//
+// - an average hash: one bit per pixel of the thumbnail, set when the pixel is
+//   brighter than the average of the channel;
+// - a difference hash: one bit per pair of horizontally adjacent pixels, set
+//   when the left pixel is brighter than the right one.
+//
+// The bits are packed into longs, so comparing two fingerprints is a XOR and a
+// bit count per long. The fingerprint of a reference image is calculated once
+// and compared with the fingerprints of the following images.
+public class ImageFingerprint
+{
+    public static final int SIZE = 16;
+    private static final int MAXIMUM_NUMBER_OF_CHANNELS = 3;
+    private static final int BITS_PER_CHANNEL = SIZE * SIZE + SIZE * (SIZE - 1);
+
+    private final long[] bits;
+    private final int numberOfBits;
+
+    /**
+     * Calculates the fingerprint of a SIZE x SIZE thumbnail, given as its 8 bit pixel values,
+     * with the channels of each pixel stored together.
+     */
+    ImageFingerprint(byte[] pixels, int numberOfChannels)
+    {
+        int channelsToHash = Math.min(numberOfChannels, MAXIMUM_NUMBER_OF_CHANNELS);
+        numberOfBits = channelsToHash * BITS_PER_CHANNEL;
+        bits = new long[(numberOfBits + 63) / 64];
+
+        int bit = 0;
+        for (int channel = 0; channel < channelsToHash; channel++) {
+            int sum = 0;
+            for (int i = channel; i < SIZE * SIZE * numberOfChannels; i += numberOfChannels) {
+                sum += pixels[i] & 0xFF;
+            }
+            // Compares value * number of pixels with the sum, instead of the value with the
+            // average, to avoid the division
+            for (int i = channel; i < SIZE * SIZE * numberOfChannels; i += numberOfChannels) {
+                setBit(bit++, (pixels[i] & 0xFF) * SIZE * SIZE > sum);
+            }
+            for (int row = 0; row < SIZE; row++) {
+                int rowStart = row * SIZE * numberOfChannels + channel;
+                for (int column = 0; column < SIZE - 1; column++) {
+                    int left = pixels[rowStart + column * numberOfChannels] & 0xFF;
+                    int right = pixels[rowStart + (column + 1) * numberOfChannels] & 0xFF;
+                    setBit(bit++, left > right);
+                }
+            }
+        }
+    }
+
+    private void setBit(int index, boolean value)
+    {
+        if (value) {
+            bits[index >>> 6] |= 1L << (index & 63);
+        }
+    }
+
+    public int getNumberOfBits()
+    {
+        return numberOfBits;
+    }
+
+    /**
+     * Returns the number of bits that are different in the two fingerprints (Hamming distance).
+     * Fingerprints of images with a different number of channels are completely different.
+     */
+    public int distanceTo(ImageFingerprint other)
+    {
+        if (other.numberOfBits != numberOfBits) {
+            return Math.max(numberOfBits, other.numberOfBits);
+        }
+        int distance = 0;
+        for (int i = 0; i < bits.length; i++) {
+            distance += Long.bitCount(bits[i] ^ other.bits[i]);
+        }
+        return distance;
+    }
+
+    /**
+     * Returns the fraction of bits that are equal in the two fingerprints, from 0 to 1.
+     */
+    public double similarityTo(ImageFingerprint other)
+    {
+        return 1 - (double) distanceTo(other) / Math.max(numberOfBits, other.numberOfBits);
+    }
+}
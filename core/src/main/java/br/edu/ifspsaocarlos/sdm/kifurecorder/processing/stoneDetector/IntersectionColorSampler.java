@@ -0,0 +1,292 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.stoneDetector;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.ImageUtils;
+
+/**
+ * Calculates the average color around every intersection of the orthogonal
+ * board image. The pixels of the image are copied to a Java array once per
+ * image, with a single JNI call, and the average color of each intersection is
+ * calculated from this array, instead of through a submat and a Core.mean call
+ * for each intersection. The averages of all intersections are stored in a
+ * single table, which is used for the neighbors of an intersection too.
+ *
+ * The windows around the intersections cover less than half of the 500x500
+ * image, so summing them directly is cheaper than calculating the integral
+ * image of the whole board.
+ *
+ * The colors can also be sampled straight from the camera frame, without the
+ * orthogonal board image (see sampleThroughHomography()). The position in the
+ * camera frame of each pixel of the windows is calculated once for each
+ * perspective transform and stored in a lookup table, which is used to remap
+ * only these pixels, in the same way warpPerspective would, to a single strip
+ * of pixels where the pixels of each window are together.
+ */
+public class IntersectionColorSampler {
+
+    private static final int LOOKUP_TABLE_WIDTH = 512;
+
+    private Mat image8Bits = new Mat();
+    private byte[] pixels = new byte[0];
+    // Average color of each intersection, channel by channel, row by row
+    private double[] averageColors = new double[0];
+    private int boardDimension;
+    private int channels;
+
+    // Lookup table of sampleThroughHomography(), valid for a transform and a board dimension
+    private Mat transformationMatrixOfLookupTable = null;
+    private int boardDimensionOfLookupTable = 0;
+    private Mat lookupTableMap1 = new Mat();
+    private Mat lookupTableMap2 = new Mat();
+    // Number of pixels of the window around each intersection, row by row
+    private int[] windowAreas = new int[0];
+    private Mat windowPixels = new Mat();
+
+    /**
+     * Calculates the average colors of all intersections of the board image.
+     */
+    public void sample(Mat boardImage, int boardDimension) {
+        this.boardDimension = boardDimension;
+        channels = boardImage.channels();
+
+        Mat image = boardImage;
+        if (image.depth() != CvType.CV_8U) {
+            image.convertTo(image8Bits, CvType.CV_8U);
+            image = image8Bits;
+        } else if (!image.isContinuous()) {
+            image.copyTo(image8Bits);
+            image = image8Bits;
+        }
+        int numberOfValues = (int) image.total() * channels;
+        if (pixels.length != numberOfValues) {
+            pixels = new byte[numberOfValues];
+        }
+        image.get(0, 0, pixels);
+
+        int averageColorsSize = boardDimension * boardDimension * channels;
+        if (averageColors.length != averageColorsSize) {
+            averageColors = new double[averageColorsSize];
+        }
+
+        int width = image.width();
+        int height = image.height();
+        int radius = getRadius(boardDimension);
+
+        for (int row = 0; row < boardDimension; ++row) {
+            for (int column = 0; column < boardDimension; ++column) {
+                int y = row * width / (boardDimension - 1);
+                int x = column * height / (boardDimension - 1);
+
+                // It's not a circle, but with the speedup gain, I think it's worth it to calculate the
+                // average of colors this way
+                int top = Math.max(y - radius, 0);
+                int bottom = Math.min(y + radius, height);
+                int left = Math.max(x - radius, 0);
+                int right = Math.min(x + radius, width);
+                int area = (bottom - top) * (right - left);
+
+                int position = (row * boardDimension + column) * channels;
+                if (channels == 4) {
+                    sumWindowOfRgbaImage(width, top, bottom, left, right, area, position);
+                } else {
+                    sumWindow(width, top, bottom, left, right, area, position);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the average colors of all intersections of the board in the camera frame,
+     * sampling the pixels of the windows around the intersections straight from the camera frame.
+     * The result is practically the same as the one of sample() with the orthogonal board image
+     * generated from the camera frame with the transformation matrix (the averages differ by
+     * hundredths, because the positions are rounded a little differently).
+     *
+     * @param transformationMatrix Perspective transform from the camera frame to the orthogonal
+     *                             board image. The lookup table is recalculated when a different
+     *                             matrix is used, so the matrix must not be modified.
+     */
+    public void sampleThroughHomography(Mat cameraImage, Mat transformationMatrix, int boardDimension) {
+        this.boardDimension = boardDimension;
+        channels = cameraImage.channels();
+
+        if (transformationMatrix != transformationMatrixOfLookupTable || boardDimension != boardDimensionOfLookupTable) {
+            calculateLookupTable(transformationMatrix, boardDimension);
+        }
+
+        Imgproc.remap(cameraImage, windowPixels, lookupTableMap1, lookupTableMap2, Imgproc.INTER_LINEAR);
+        if (windowPixels.depth() != CvType.CV_8U) {
+            windowPixels.convertTo(windowPixels, CvType.CV_8U);
+        }
+        int numberOfValues = (int) windowPixels.total() * channels;
+        if (pixels.length != numberOfValues) {
+            pixels = new byte[numberOfValues];
+        }
+        windowPixels.get(0, 0, pixels);
+
+        int averageColorsSize = boardDimension * boardDimension * channels;
+        if (averageColors.length != averageColorsSize) {
+            averageColors = new double[averageColorsSize];
+        }
+
+        int start = 0;
+        for (int intersection = 0; intersection < boardDimension * boardDimension; ++intersection) {
+            int area = windowAreas[intersection];
+            sumStrip(start * channels, (start + area) * channels, area, intersection * channels);
+            start += area;
+        }
+    }
+
+    /**
+     * Maps every pixel of the windows around the intersections of the orthogonal board image to
+     * its position in the camera frame. The maps are converted to the fixed point format that
+     * warpPerspective uses internally, which is also faster to remap.
+     */
+    private void calculateLookupTable(Mat transformationMatrix, int boardDimension) {
+        int size = ImageUtils.ORTHOGONAL_BOARD_IMAGE_SIZE;
+        int radius = getRadius(boardDimension);
+        windowAreas = new int[boardDimension * boardDimension];
+
+        int numberOfPixels = 0;
+        for (int row = 0; row < boardDimension; ++row) {
+            for (int column = 0; column < boardDimension; ++column) {
+                int y = row * size / (boardDimension - 1);
+                int x = column * size / (boardDimension - 1);
+                int area = (Math.min(y + radius, size) - Math.max(y - radius, 0)) * (Math.min(x + radius, size) - Math.max(x - radius, 0));
+                windowAreas[row * boardDimension + column] = area;
+                numberOfPixels += area;
+            }
+        }
+
+        // remap() is limited to images with less than 32767 rows, so the strip of pixels is split
+        // in rows of LOOKUP_TABLE_WIDTH pixels. The positions after the last window are not used.
+        int numberOfRows = Math.max((numberOfPixels + LOOKUP_TABLE_WIDTH - 1) / LOOKUP_TABLE_WIDTH, 1);
+        float[] positions = new float[numberOfRows * LOOKUP_TABLE_WIDTH * 2];
+        int index = 0;
+        for (int row = 0; row < boardDimension; ++row) {
+            for (int column = 0; column < boardDimension; ++column) {
+                int y = row * size / (boardDimension - 1);
+                int x = column * size / (boardDimension - 1);
+                for (int pixelRow = Math.max(y - radius, 0); pixelRow < Math.min(y + radius, size); ++pixelRow) {
+                    for (int pixelColumn = Math.max(x - radius, 0); pixelColumn < Math.min(x + radius, size); ++pixelColumn) {
+                        positions[index++] = pixelColumn;
+                        positions[index++] = pixelRow;
+                    }
+                }
+            }
+        }
+
+        Mat orthogonalPositions = new Mat(numberOfRows, LOOKUP_TABLE_WIDTH, CvType.CV_32FC2);
+        orthogonalPositions.put(0, 0, positions);
+        Mat inverseTransformationMatrix = new Mat();
+        Core.invert(transformationMatrix, inverseTransformationMatrix);
+        Mat positionsInCameraImage = new Mat();
+        Core.perspectiveTransform(orthogonalPositions, positionsInCameraImage, inverseTransformationMatrix);
+        Imgproc.convertMaps(positionsInCameraImage, new Mat(), lookupTableMap1, lookupTableMap2, CvType.CV_16SC2, false);
+
+        orthogonalPositions.release();
+        inverseTransformationMatrix.release();
+        positionsInCameraImage.release();
+        transformationMatrixOfLookupTable = transformationMatrix;
+        boardDimensionOfLookupTable = boardDimension;
+    }
+
+    /**
+     * Same as sumWindow(), for a window whose pixels are together in the pixel array, from start
+     * (inclusive) to end (exclusive).
+     */
+    private void sumStrip(int start, int end, int area, int position) {
+        for (int channel = 0; channel < channels; ++channel) {
+            long sum = 0;
+            for (int index = start + channel; index < end; index += channels) {
+                sum += pixels[index] & 0xFF;
+            }
+            averageColors[position + channel] = area > 0 ? (double) sum / area : 0;
+        }
+    }
+
+    private void sumWindow(int width, int top, int bottom, int left, int right, int area, int position) {
+        for (int channel = 0; channel < channels; ++channel) {
+            long sum = 0;
+            for (int pixelRow = top; pixelRow < bottom; ++pixelRow) {
+                int end = (pixelRow * width + right) * channels;
+                for (int index = (pixelRow * width + left) * channels + channel; index < end; index += channels) {
+                    sum += pixels[index] & 0xFF;
+                }
+            }
+            averageColors[position + channel] = area > 0 ? (double) sum / area : 0;
+        }
+    }
+
+    /**
+     * Same as sumWindow(), for the RGBA images given by the camera, summing the four channels in
+     * a single pass.
+     */
+    private void sumWindowOfRgbaImage(int width, int top, int bottom, int left, int right, int area, int position) {
+        long sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        for (int pixelRow = top; pixelRow < bottom; ++pixelRow) {
+            int end = (pixelRow * width + right) * 4;
+            for (int index = (pixelRow * width + left) * 4; index < end; index += 4) {
+                sum0 += pixels[index] & 0xFF;
+                sum1 += pixels[index + 1] & 0xFF;
+                sum2 += pixels[index + 2] & 0xFF;
+                sum3 += pixels[index + 3] & 0xFF;
+            }
+        }
+        if (area > 0) {
+            averageColors[position] = (double) sum0 / area;
+            averageColors[position + 1] = (double) sum1 / area;
+            averageColors[position + 2] = (double) sum2 / area;
+            averageColors[position + 3] = (double) sum3 / area;
+        } else {
+            averageColors[position] = 0;
+            averageColors[position + 1] = 0;
+            averageColors[position + 2] = 0;
+            averageColors[position + 3] = 0;
+        }
+    }
+
+    public int getNumberOfChannels() {
+        return channels;
+    }
+
+    /**
+     * Returns the average color around an intersection of the last sampled image.
+     */
+    public double[] getAverageColorOnPosition(int row, int column) {
+        double[] color = new double[channels];
+        System.arraycopy(averageColors, (row * boardDimension + column) * channels, color, 0, channels);
+        return color;
+    }
+
+    /**
+     * The othogonal board image has a size of 500x500 pixels.
+     * This calculation returns more or less the size of a little less than half of a stone in
+     * the orthogonal board image.
+     * 9x9 -> 25
+     * 13x13 -> 17
+     * 19x19 -> 11
+     *
+     * Before, the radius used was 8 pixels. In a 9x9 board on a 500x500 image, a radius of 8px,
+     * on an intersection that has the hoshi point, the detector almost thought there was a black
+     * stone there.
+     */
+    private int getRadius(int boardDimension) {
+        //int radius = 500 / (partida.getBoardDimension() - 1) * 0.33;
+        if (boardDimension == 9) {
+            return 21;
+        }
+        else if (boardDimension == 13) {
+            return 14;
+        }
+        else if (boardDimension == 19) {
+            return 9;
+        }
+        return 0;
+    }
+
+}
@@ -1,7 +1,5 @@
 package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.stoneDetector;
 
-import android.util.Log;
-
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
 import org.opencv.core.Scalar;
@@ -20,17 +18,56 @@ public class StoneDetector {
 
     // Orthogonal square image of the board
     private Mat boardImage = null;
+    // Camera image and perspective transform from it to the orthogonal board image, used
+    // instead of the board image when the stones are detected without warping the camera image
+    private Mat cameraImage = null;
+    private Mat transformationMatrix = null;
     // Dimensions of the board (9x9, 13x13 or 19x19)
     private int boardDimension = 0;
     // Debug information of the current state seen by the detector
     public StringBuilder snapshot;
+    // Average colors around the intersections of the board image
+    private IntersectionColorSampler sampler = new IntersectionColorSampler();
+    // Confidence of the move found by the last detection, or 1 if no move was found
+    private double confidenceOfLastDetection = 1;
 
     public void setBoardDimension(int boardDimension) {
         this.boardDimension = boardDimension;
     }
 
+    /**
+     * Returns the confidence of the move found by the last call to detect(lastBoard, ...), from 0
+     * to 1, or 1 if no move was found.
+     */
+    public double getConfidenceOfLastDetection() {
+        return confidenceOfLastDetection;
+    }
+
     public void setBoardImage(Mat boardImage) {
         this.boardImage = boardImage;
+        cameraImage = null;
+        transformationMatrix = null;
+    }
+
+    /**
+     * Detects the stones straight from the camera image, sampling only the pixels around the
+     * intersections, instead of from the orthogonal board image.
+     *
+     * @param transformationMatrix Perspective transform from the camera image to the orthogonal
+     *                             board image, which must not be modified afterwards
+     */
+    public void setCameraImage(Mat cameraImage, Mat transformationMatrix) {
+        this.cameraImage = cameraImage;
+        this.transformationMatrix = transformationMatrix;
+        boardImage = null;
+    }
+
+    private void sampleIntersections() {
+        if (boardImage != null) {
+            sampler.sample(boardImage, boardDimension);
+        } else {
+            sampler.sampleThroughHomography(cameraImage, transformationMatrix, boardDimension);
+        }
     }
 
     /**
@@ -39,8 +76,9 @@ public class StoneDetector {
     public Board detect() {
 
         Board board = new Board(boardDimension);
+        sampleIntersections();
 
-        double[] averageColorOfBoard = calculateAverageColorOfBoard(boardImage);
+        double[] averageColorOfBoard = calculateAverageColorOfBoard();
 
         for (int i = 0; i < boardDimension; ++i) {
             for (int j = 0; j < boardDimension; ++j) {
@@ -63,11 +101,11 @@ public class StoneDetector {
      * current game state.
      */
     public Board detect(Board lastBoard, boolean canBeBlackStone, boolean canBeWhiteStone) {
-        long startTime           = System.currentTimeMillis();
-        double[][] averageColors = new double[3][boardImage.channels()];
-        int[] counters           = new int[3];
-
         snapshot = new StringBuilder();
+        sampleIntersections();
+
+        double[][] averageColors = new double[3][sampler.getNumberOfChannels()];
+        int[] counters           = new int[3];
 
         getAverageColors(lastBoard, averageColors, counters);
 
@@ -138,18 +176,18 @@ public class StoneDetector {
         if (chosenMove != null && (canBeBlackStone && chosenMove.color == Board.BLACK_STONE ||
                 canBeWhiteStone && chosenMove.color == Board.WHITE_STONE)) {
             snapshot.append("Chosen move = " + chosenMove + " with confidence " + biggestConfidence + "\n");
+            confidenceOfLastDetection = Math.min(biggestConfidence, 1);
         }
         else {
             snapshot.append("No move detected.\n");
             chosenMove = null;
+            confidenceOfLastDetection = 1;
         }
 
-        Log.d("KifuRecorder", "TIME (detect()): " + (System.currentTimeMillis() - startTime));
         return lastBoard.generateNewBoardWith(chosenMove);
     }
 
     private void getAverageColors(Board lastBoard, double[][] averageColors, int[] counters) {
-        long startTime = System.currentTimeMillis();
         counters[Board.EMPTY] = 0;
         counters[Board.BLACK_STONE] = 0;
         counters[Board.WHITE_STONE] = 0;
@@ -160,16 +198,15 @@ public class StoneDetector {
                 counters[colorOnPosition]++;
                 double[] averageColorOnPosition = calculateAverageColorOnPosition(i, j);
 
-                for (int k = 0; k < boardImage.channels(); ++k) {
+                for (int k = 0; k < sampler.getNumberOfChannels(); ++k) {
                     averageColors[colorOnPosition][k] += averageColorOnPosition[k];
                 }
             }
         }
-        Log.d("KifuRecorder", "TIME (detect() (1)): " + (System.currentTimeMillis() - startTime));
 
         for (int i = 0; i < 3; ++i) {
             if (counters[i] > 0) {
-                for (int j = 0; j < boardImage.channels(); ++j) {
+                for (int j = 0; j < sampler.getNumberOfChannels(); ++j) {
                     averageColors[i][j] /= counters[i];
                 }
 //                Log.d("KifuRecorder", "Cor média[" + i + "] = " + printColor(averageColors[i]));
@@ -384,70 +421,11 @@ public class StoneDetector {
 
     // TODO: Transformar hipóteses de recuperação de cor em classes separadas
     private double[] calculateAverageColorOnPosition(int row, int column) {
-
-        int y = row * (int) boardImage.size().width / (boardDimension - 1);
-        int x = column * (int) boardImage.size().height / (boardDimension - 1);
-
-        double[] color = calculateAverageColors(y, x);
+        double[] color = sampler.getAverageColorOnPosition(row, column);
 //        double[] color = recuperarMediaGaussianaDeCores(boardImage, row, column);
         return color;
     }
 
-    /**
-     * Calculates the average color around a position in the image
-     *
-     * @param y
-     * @param x
-     * @return
-     */
-    private double[] calculateAverageColors(int y, int x) {
-//        long tempoEntrou = System.currentTimeMillis();
-
-        /**
-
-         * The othogonal board image has a size of 500x500 pixels.
-         * This calculation returns more or less the size of a little less than half of a stone in
-         * the orthogonal board image.
-         * 9x9 -> 25
-         * 13x13 -> 17
-         * 19x19 -> 11
-         *
-         * Before, the radius used was 8 pixels. In a 9x9 board on a 500x500 image, a radius of 8px,
-         * on an intersection that has the hoshi point, the detector almost thought there was a black
-         * stone there.
-         */ 
-        //int radius = 500 / (partida.getBoardDimension() - 1) * 0.33;
-        int radius = 0;
-        if (boardDimension == 9) {
-            radius = 21;
-        }
-        else if (boardDimension == 13) {
-            radius = 14;
-        }
-        else if (boardDimension == 19) {
-            radius = 9;
-        }
-
-        // It's not a circle, but with the speedup gain, I think it's worth it to calculate the
-        // average of colors this way
-        Mat roi = boardImage.submat(
-                Math.max(y - radius, 0),
-                Math.min(y + radius, boardImage.height()),
-                Math.max(x - radius, 0),
-                Math.min(x + radius, boardImage.width())
-        );
-        Scalar mediaScalar = Core.mean(roi);
-
-        double[] corMedia = new double[boardImage.channels()];
-        for (int i = 0; i < mediaScalar.val.length; ++i) {
-            corMedia[i] = mediaScalar.val[i];
-        }
-
-//        Log.i("KifuRecorder", "Cor média ao redor de (" + x + ", " + y + ") = " + printColor(corMedia));
-//        Log.d("KifuRecorder", "TEMPO (calculateAverageColors()): " + (System.currentTimeMillis() - tempoEntrou));
-        return corMedia;
-    }
-
     /*
     private double[] recuperarMediaGaussianaDeCores(int y, int x) {
         double[] color = new double[imagem.channels()];
@@ -540,10 +518,24 @@ public class StoneDetector {
      *
      * THIS COLOR CHANGES AS THE GAME PROGRESSES AND AS THE AMBIENT ILLUMINATION CHANGES.
      *
-     * @param boardImage
+     * Without the board image, it's the average of the colors around the intersections.
+     *
      * @return
      */
-    private double[] calculateAverageColorOfBoard(Mat boardImage) {
+    private double[] calculateAverageColorOfBoard() {
+        if (boardImage == null) {
+            double[] average = new double[sampler.getNumberOfChannels()];
+            for (int i = 0; i < boardDimension; ++i) {
+                for (int j = 0; j < boardDimension; ++j) {
+                    double[] color = sampler.getAverageColorOnPosition(i, j);
+                    for (int k = 0; k < average.length; ++k) {
+                        average[k] += color[k] / (boardDimension * boardDimension);
+                    }
+                }
+            }
+            return average;
+        }
+
         Scalar scalarAverage = Core.mean(boardImage);
 
         double[] average = new double[boardImage.channels()];
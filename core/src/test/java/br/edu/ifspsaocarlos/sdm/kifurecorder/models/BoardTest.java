@@ -0,0 +1,346 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.models;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BoardTest {
+
+    // Serialized by the version of the app that stored the stones in an Integer[][]. It's a 9x9
+    // board with black stones at (0, 0) and (4, 4) and white stones at (2, 3) and (8, 7).
+    private static final String BOARD_WITH_INTEGER_MATRIX = "board_with_integer_matrix.ser";
+
+    @Test
+    public void testCopyIsIdenticalAndIndependent() {
+        Board board = boardFrom(
+            "P....",
+            ".B...",
+            ".....",
+            "...P.",
+            "....B");
+        Board copy = new Board(board);
+        assertTrue(copy.isIdenticalTo(board));
+        assertEquals(board.getZobristHash(), copy.getZobristHash());
+
+        copy.putStone(2, 2, Board.BLACK_STONE);
+        assertFalse(copy.isIdenticalTo(board));
+        assertEquals(Board.EMPTY, board.getPosition(2, 2));
+    }
+
+    @Test
+    public void testNewBoardsKeepTheChainsOfTheirBoards() {
+        // Each board copies the chains of the previous one and updates them with its move
+        int[][] moves = {{0, 0}, {1, 0}, {0, 1}, {1, 1}, {0, 2}, {1, 2}, {4, 4}, {0, 3}};
+        Board[] boards = new Board[moves.length + 1];
+        boards[0] = new Board(5);
+        for (int i = 0; i < moves.length; ++i) {
+            int color = i % 2 == 0 ? Board.WHITE_STONE : Board.BLACK_STONE;
+            boards[i + 1] = boards[i].generateNewBoardWith(new Move(moves[i][0], moves[i][1], color));
+            assertEquals(color, boards[i + 1].getPosition(moves[i][0], moves[i][1]));
+        }
+
+        // The last move captures the three white stones, which were joined into one chain
+        Board lastBoard = boards[moves.length];
+        assertTrue(lastBoard.isIdenticalTo(boardFrom(
+            "...P.",
+            "PPP..",
+            ".....",
+            ".....",
+            "....B")));
+        // The boards the moves were played on are not changed
+        Board boardBeforeTheCapture = boards[moves.length - 1];
+        assertTrue(boardBeforeTheCapture.isIdenticalTo(boardFrom(
+            "BBB..",
+            "PPP..",
+            ".....",
+            ".....",
+            "....B")));
+        assertTrue(boardBeforeTheCapture.generateNewBoardWith(new Move(0, 3, Board.BLACK_STONE)).isIdenticalTo(lastBoard));
+        assertTrue(new Board(boardBeforeTheCapture).generateNewBoardWith(new Move(0, 3, Board.BLACK_STONE)).isIdenticalTo(lastBoard));
+    }
+
+    @Test
+    public void testBoardsAreEqualToTheirRotations() {
+        Board board = boardFrom(
+            "PP...",
+            "..B..",
+            ".....",
+            ".....",
+            "....B");
+        Board rotation = board;
+        for (int i = 0; i < 3; ++i) {
+            rotation = rotation.rotate(1);
+            assertEquals(board, rotation);
+            assertEquals(board.hashCode(), rotation.hashCode());
+            assertEquals(board.getSymmetricZobristHash(), rotation.getSymmetricZobristHash());
+            assertFalse(board.isIdenticalTo(rotation));
+        }
+        assertTrue(board.isIdenticalTo(rotation.rotate(1)));
+        assertTrue(board.isIdenticalTo(board.rotate(1).rotate(-1)));
+    }
+
+    @Test
+    public void testBoardsWithDifferentStonesAreNotEqual() {
+        Board board = boardFrom(
+            "PP...",
+            "..B..",
+            ".....",
+            ".....",
+            "....B");
+        // A reflection is not a rotation
+        Board reflection = boardFrom(
+            "...PP",
+            "..B..",
+            ".....",
+            ".....",
+            "B....");
+        Board otherColors = boardFrom(
+            "BB...",
+            "..P..",
+            ".....",
+            ".....",
+            "....P");
+        assertNotEquals(board, reflection);
+        assertNotEquals(board, otherColors);
+        assertNotEquals(board, new Board(5));
+        assertNotEquals(new Board(5), new Board(9));
+        assertEquals(new Board(9), new Board(9));
+    }
+
+    @Test
+    public void testStonesAreCountedInAllWordsOfTheBitsets() {
+        // Positions 63 and 64 are the last bit of the first word and the first bit of the second
+        Board previousBoard = new Board(19);
+        previousBoard.putStone(3, 6, Board.BLACK_STONE);
+        previousBoard.putStone(18, 18, Board.WHITE_STONE);
+
+        Board board = new Board(previousBoard);
+        board.putStone(3, 7, Board.BLACK_STONE);
+        Move move = board.getDifferenceTo(previousBoard);
+        assertNotNull(move);
+        assertEquals(3, move.row);
+        assertEquals(7, move.column);
+        assertEquals(Board.BLACK_STONE, move.color);
+
+        // Two stones of the same color can't have been added by one move
+        board.putStone(0, 0, Board.BLACK_STONE);
+        assertNull(board.getDifferenceTo(previousBoard));
+    }
+
+    @Test
+    public void testReadsBoardSerializedWithIntegerMatrix() throws IOException, ClassNotFoundException {
+        byte[] serializedBoard = readResource(BOARD_WITH_INTEGER_MATRIX);
+        Board board = deserialize(serializedBoard);
+
+        Board expectedBoard = new Board(9);
+        expectedBoard.putStone(0, 0, Board.BLACK_STONE);
+        expectedBoard.putStone(2, 3, Board.WHITE_STONE);
+        expectedBoard.putStone(4, 4, Board.BLACK_STONE);
+        expectedBoard.putStone(8, 7, Board.WHITE_STONE);
+        assertEquals(9, board.getDimension());
+        assertTrue(board.isIdenticalTo(expectedBoard));
+        assertEquals(expectedBoard.getZobristHash(), board.getZobristHash());
+
+        assertTrue(deserialize(serialize(board)).isIdenticalTo(expectedBoard));
+    }
+
+    @Test
+    public void testSerializedBoardCanStillPlay() throws IOException, ClassNotFoundException {
+        Board board = boardFrom(
+            ".P...",
+            "PBP..",
+            ".....",
+            ".....",
+            ".....");
+        Board deserializedBoard = deserialize(serialize(board));
+        assertTrue(deserializedBoard.isIdenticalTo(board));
+        assertTrue(deserializedBoard.generateNewBoardWith(new Move(2, 1, Board.BLACK_STONE)).isIdenticalTo(boardFrom(
+            ".P...",
+            "P.P..",
+            ".P...",
+            ".....",
+            ".....")));
+    }
+
+    @Test
+    public void testCapture() {
+        Board board = boardFrom(
+            "BP...",
+            ".....",
+            ".....",
+            ".....",
+            ".....");
+        Board newBoard = board.generateNewBoardWith(new Move(1, 0, Board.BLACK_STONE));
+        assertTrue(newBoard.isIdenticalTo(boardFrom(
+            ".P...",
+            "P....",
+            ".....",
+            ".....",
+            ".....")));
+        // The board the move was played on doesn't change
+        assertEquals(Board.WHITE_STONE, board.getPosition(0, 0));
+    }
+
+    @Test
+    public void testCaptureOfAChainWithManyStones() {
+        Board board = boardFrom(
+            "BBB..",
+            "BPP..",
+            "P....",
+            ".....",
+            ".....");
+        Board newBoard = board.generateNewBoardWith(new Move(0, 3, Board.BLACK_STONE));
+        assertTrue(newBoard.isIdenticalTo(boardFrom(
+            "...P.",
+            ".PP..",
+            "P....",
+            ".....",
+            ".....")));
+    }
+
+    @Test
+    public void testCaptureOfManyChainsByTheSameMove() {
+        Board board = boardFrom(
+            "PBP..",
+            "B.BP.",
+            "PBP..",
+            ".P...",
+            ".....");
+        Board newBoard = board.generateNewBoardWith(new Move(1, 1, Board.BLACK_STONE));
+        assertTrue(newBoard.isIdenticalTo(boardFrom(
+            "P.P..",
+            ".P.P.",
+            "P.P..",
+            ".P...",
+            ".....")));
+    }
+
+    @Test
+    public void testCapturingMoveWithoutLibertiesIsNotSuicide() {
+        Board board = boardFrom(
+            ".PB..",
+            "P.PB.",
+            ".PB..",
+            ".....",
+            ".....");
+        Board newBoard = board.generateNewBoardWith(new Move(1, 1, Board.WHITE_STONE));
+        assertTrue(newBoard.isIdenticalTo(boardFrom(
+            ".PB..",
+            "PB.B.",
+            ".PB..",
+            ".....",
+            ".....")));
+    }
+
+    @Test
+    public void testSuicideIsNotPlayed() {
+        Board board = boardFrom(
+            ".P...",
+            "P....",
+            ".....",
+            ".....",
+            ".....");
+        assertSame(board, board.generateNewBoardWith(new Move(0, 0, Board.WHITE_STONE)));
+
+        // Suicide of a chain with more than one stone
+        board = boardFrom(
+            ".BP..",
+            "PP...",
+            ".....",
+            ".....",
+            ".....");
+        assertSame(board, board.generateNewBoardWith(new Move(0, 0, Board.WHITE_STONE)));
+    }
+
+    @Test
+    public void testInvalidMovesAreNotPlayed() {
+        Board board = boardFrom(
+            "P....",
+            ".....",
+            ".....",
+            ".....",
+            ".....");
+        assertSame(board, board.generateNewBoardWith(null));
+        assertSame(board, board.generateNewBoardWith(new Move(0, 0, Board.WHITE_STONE)));
+        assertSame(board, board.generateNewBoardWith(new Move(5, 0, Board.WHITE_STONE)));
+        assertSame(board, board.generateNewBoardWith(new Move(1, 1, Board.EMPTY)));
+    }
+
+    @Test
+    public void testGroupAt() {
+        Board board = boardFrom(
+            "PP...",
+            "P.B..",
+            ".....",
+            ".....",
+            ".....");
+        Group group = board.getGroupAt(0, 0);
+        Group expectedGroup = new Group(Board.BLACK_STONE);
+        expectedGroup.addPosition(new Position(0, 0));
+        expectedGroup.addPosition(new Position(0, 1));
+        expectedGroup.addPosition(new Position(1, 0));
+        expectedGroup.addLiberty(new Position(0, 2));
+        expectedGroup.addLiberty(new Position(1, 1));
+        expectedGroup.addLiberty(new Position(2, 0));
+        assertEquals(expectedGroup, group);
+        assertNull(board.getGroupAt(1, 1));
+    }
+
+    /**
+     * Creates a board from its rows, written like in Board.toString(): P for black stones, B for
+     * white stones and . for empty positions.
+     */
+    static Board boardFrom(String... rows) {
+        Board board = new Board(rows.length);
+        for (int i = 0; i < rows.length; ++i) {
+            for (int j = 0; j < rows[i].length(); ++j) {
+                char position = rows[i].charAt(j);
+                if (position == 'P') board.putStone(i, j, Board.BLACK_STONE);
+                else if (position == 'B') board.putStone(i, j, Board.WHITE_STONE);
+            }
+        }
+        return board;
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        InputStream input = getClass().getResourceAsStream(name);
+        assertNotNull("Missing resource " + name, input);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+        while ((length = input.read(buffer)) != -1) {
+            bytes.write(buffer, 0, length);
+        }
+        input.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] serialize(Board board) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(board);
+        output.close();
+        return bytes.toByteArray();
+    }
+
+    private static Board deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        Board board = (Board) input.readObject();
+        input.close();
+        return board;
+    }
+
+}
@@ -0,0 +1,136 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.models;
+
+import org.junit.Test;
+
+import static br.edu.ifspsaocarlos.sdm.kifurecorder.models.BoardTest.boardFrom;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GameTest {
+
+    /**
+     * Plays the moves until white is about to retake the ko at (1, 1):
+     *
+     *   .PB..
+     *   P.PB.
+     *   .PB..
+     *   .....
+     *   ....P
+     */
+    private Game createGameWithKo() {
+        Game game = new Game(5, "Black", "White", "6.5");
+        assertTrue(game.replayMove(new Move(0, 1, Board.BLACK_STONE)));
+        assertTrue(game.replayMove(new Move(0, 2, Board.WHITE_STONE)));
+        assertTrue(game.replayMove(new Move(1, 0, Board.BLACK_STONE)));
+        assertTrue(game.replayMove(new Move(1, 3, Board.WHITE_STONE)));
+        assertTrue(game.replayMove(new Move(2, 1, Board.BLACK_STONE)));
+        assertTrue(game.replayMove(new Move(2, 2, Board.WHITE_STONE)));
+        assertTrue(game.replayMove(new Move(4, 4, Board.BLACK_STONE)));
+        assertTrue(game.replayMove(new Move(1, 1, Board.WHITE_STONE)));
+        // Captures the white stone at (1, 1)
+        assertTrue(game.replayMove(new Move(1, 2, Board.BLACK_STONE)));
+        return game;
+    }
+
+    @Test
+    public void testMovesAreAddedFromTheDetectedBoards() {
+        Game game = new Game(5, "Black", "White", "6.5");
+        assertTrue(game.addMoveIfItIsValid(boardFrom(
+            ".....",
+            ".P...",
+            ".....",
+            ".....",
+            ".....")));
+        // Two stones were added
+        assertFalse(game.addMoveIfItIsValid(boardFrom(
+            ".....",
+            ".P...",
+            "..B..",
+            "...B.",
+            ".....")));
+        assertTrue(game.addMoveIfItIsValid(boardFrom(
+            ".....",
+            ".P...",
+            "..B..",
+            ".....",
+            ".....")));
+        // It's black's turn
+        assertFalse(game.addMoveIfItIsValid(boardFrom(
+            ".....",
+            ".P...",
+            "..B..",
+            "...B.",
+            ".....")));
+        assertEquals(2, game.getNumberOfMoves());
+        assertEquals(";B[bb]", game.getMoves().get(0).sgf());
+        assertEquals(";W[cc]", game.getLastMove().sgf());
+    }
+
+    @Test
+    public void testRetakingTheKoImmediatelyRepeatsABoard() {
+        Game game = createGameWithKo();
+        assertFalse(game.replayMove(new Move(1, 1, Board.WHITE_STONE)));
+        assertFalse(game.addMoveIfItIsValid(boardFrom(
+            ".PB..",
+            "PB.B.",
+            ".PB..",
+            ".....",
+            "....P")));
+        assertEquals(9, game.getNumberOfMoves());
+
+        // Once other stones were played, retaking the ko doesn't repeat any board
+        assertTrue(game.replayMove(new Move(3, 0, Board.WHITE_STONE)));
+        assertTrue(game.replayMove(new Move(4, 0, Board.BLACK_STONE)));
+        assertTrue(game.replayMove(new Move(1, 1, Board.WHITE_STONE)));
+    }
+
+    @Test
+    public void testFindBoardFindsTheRotationsOfTheBoards() {
+        Game game = createGameWithKo();
+        Board boardBeforeTheCapture = boardFrom(
+            ".PB..",
+            "PB.B.",
+            ".PB..",
+            ".....",
+            "....P");
+        assertEquals(8, game.findBoard(boardBeforeTheCapture));
+
+        Board rotation = boardBeforeTheCapture;
+        for (int i = 0; i < 3; ++i) {
+            rotation = rotation.rotate(1);
+            assertEquals(8, game.findBoard(rotation));
+        }
+        assertEquals(0, game.findBoard(new Board(5)));
+        assertEquals(9, game.findBoard(game.getLastBoard().rotate(-1)));
+
+        // The reflection of the board is not a rotation of any board of the game
+        Board reflection = boardFrom(
+            "..BP.",
+            ".B.BP",
+            "..BP.",
+            ".....",
+            "P....");
+        assertEquals(-1, game.findBoard(reflection));
+    }
+
+    @Test
+    public void testFindBoardAfterTheGameIsRotatedOrUndone() {
+        Game game = createGameWithKo();
+        Board boardAfterTheCapture = game.getLastBoard();
+        game.undoLastMove();
+        Board boardBeforeTheCapture = game.getLastBoard();
+        assertEquals(-1, game.findBoard(boardAfterTheCapture));
+        assertEquals(8, game.findBoard(boardBeforeTheCapture));
+
+        assertTrue(game.replayMove(new Move(1, 2, Board.BLACK_STONE)));
+        game.rotate(1);
+        assertTrue(game.getLastBoard().isIdenticalTo(boardAfterTheCapture.rotate(1)));
+        assertEquals(9, game.findBoard(boardAfterTheCapture));
+        assertEquals(8, game.findBoard(boardBeforeTheCapture));
+        // The ko at (1, 1) is at (1, 3) in the rotated game, and retaking it still repeats a board
+        assertFalse(game.replayMove(new Move(1, 3, Board.WHITE_STONE)));
+        assertEquals(9, game.getNumberOfMoves());
+    }
+
+}
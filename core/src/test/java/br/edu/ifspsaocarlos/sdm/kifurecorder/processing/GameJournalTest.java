@@ -0,0 +1,184 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Board;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Game;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Move;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GameJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Game game;
+    private GameJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        game = new Game(9, "Black player", "White player", "6.5");
+        journal = new GameJournal(new File(folder.getRoot(), "game.sgf.journal"));
+        journal.start(game);
+    }
+
+    private void addMove(int row, int column, int color) {
+        assertTrue(game.replayMove(new Move(row, column, color)));
+        journal.appendMove(game.getLastMove());
+    }
+
+    private void addMoveManually(int row, int column, int color) {
+        assertTrue(game.replayMove(new Move(row, column, color)));
+        game.updateNumberOfManualAdditions();
+        journal.appendManuallyAddedMove(game.getLastMove());
+    }
+
+    private void undo() {
+        game.undoLastMove();
+        journal.appendUndo();
+    }
+
+    private void rotate(int direction) {
+        game.rotate(direction);
+        journal.appendRotation(direction);
+    }
+
+    /**
+     * Records moves, undoes, manual additions and rotations, including a capture.
+     */
+    private void recordGame() {
+        addMove(2, 2, Board.BLACK_STONE);
+        addMove(0, 0, Board.WHITE_STONE);
+        addMove(3, 3, Board.BLACK_STONE);
+        undo();
+        addMoveManually(0, 1, Board.BLACK_STONE);
+        rotate(1);
+        addMove(6, 6, Board.WHITE_STONE);
+        // Captures the white stone in the corner, which is at (0, 8) after the rotation
+        addMove(0, 7, Board.BLACK_STONE);
+        rotate(-1);
+        addMoveManually(4, 4, Board.WHITE_STONE);
+    }
+
+    private void assertSameGame(Game expectedGame, Game replayedGame) {
+        assertEquals(expectedGame.sgf(), replayedGame.sgf());
+        assertEquals(expectedGame.getNumberOfUndoes(), replayedGame.getNumberOfUndoes());
+        assertEquals(expectedGame.getNumberOfManualAdditions(), replayedGame.getNumberOfManualAdditions());
+        assertTrue(expectedGame.getLastBoard().isIdenticalTo(replayedGame.getLastBoard()));
+    }
+
+    @Test
+    public void testReplayRebuildsTheRecordedGame() throws IOException {
+        recordGame();
+        journal.close();
+
+        Game replayedGame = GameJournal.replay(journal.getFile());
+        assertSameGame(game, replayedGame);
+        assertEquals(1, replayedGame.getNumberOfUndoes());
+        assertEquals(2, replayedGame.getNumberOfManualAdditions());
+        assertEquals(Board.EMPTY, replayedGame.getLastBoard().getPosition(0, 0));
+    }
+
+    @Test
+    public void testRecordCutInTheMiddleIsIgnored() throws IOException {
+        recordGame();
+        long lengthBeforeTheLastMove = journal.getFile().length();
+        Game gameBeforeTheLastMove = GameJournal.replay(journal.getFile());
+        addMove(5, 5, Board.BLACK_STONE);
+        journal.close();
+
+        // Only part of the record of the last move was written
+        truncate(journal.getFile(), lengthBeforeTheLastMove + 4);
+        assertSameGame(gameBeforeTheLastMove, GameJournal.replay(journal.getFile()));
+
+        // The record without its line break is not complete either
+        truncate(journal.getFile(), lengthBeforeTheLastMove + "M 1 5 5".length());
+        assertSameGame(gameBeforeTheLastMove, GameJournal.replay(journal.getFile()));
+    }
+
+    @Test
+    public void testStartWritesTheMovesAndStatisticsOfTheGame() throws IOException {
+        recordGame();
+        // As when the session is restored from its snapshot
+        journal.start(game);
+        journal.close();
+
+        Game replayedGame = GameJournal.replay(journal.getFile());
+        assertSameGame(game, replayedGame);
+        assertEquals(1, replayedGame.getNumberOfUndoes());
+        assertEquals(2, replayedGame.getNumberOfManualAdditions());
+    }
+
+    @Test
+    public void testRecordsAfterStartAddToTheStatistics() throws IOException {
+        recordGame();
+        journal.start(game);
+        undo();
+        addMoveManually(8, 8, Board.WHITE_STONE);
+        addMove(7, 7, Board.BLACK_STONE);
+        journal.close();
+
+        Game replayedGame = GameJournal.replay(journal.getFile());
+        assertSameGame(game, replayedGame);
+        assertEquals(2, replayedGame.getNumberOfUndoes());
+        assertEquals(3, replayedGame.getNumberOfManualAdditions());
+    }
+
+    @Test
+    public void testJournalWithIncompleteHeaderIsNotValid() throws IOException {
+        journal.close();
+        truncate(journal.getFile(), "KIFU_RECORDER_JOURNAL 1\nSZ 9\n".length());
+        assertNull(GameJournal.replay(journal.getFile()));
+    }
+
+    @Test
+    public void testRecoverUnfinishedGames() throws IOException {
+        recordGame();
+        journal.close();
+        File invalidJournal = folder.newFile("invalid.sgf.journal");
+
+        assertEquals(1, FileHelper.recoverUnfinishedGames(folder.getRoot()));
+        File gameFile = new File(folder.getRoot(), "game.sgf");
+        assertEquals(game.sgf(), readFile(gameFile));
+        assertFalse(journal.getFile().exists());
+        // Invalid journals are kept
+        assertTrue(invalidJournal.exists());
+        assertFalse(new File(folder.getRoot(), "invalid.sgf").exists());
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static String readFile(File file) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < content.length) {
+                offset += fis.read(content, offset, content.length - offset);
+            }
+        } finally {
+            fis.close();
+        }
+        return new String(content, "UTF-8");
+    }
+
+}
@@ -0,0 +1,169 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencv.core.RotatedRect;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Board;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Game;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.models.Move;
+import br.edu.ifspsaocarlos.sdm.kifurecorder.processing.cornerDetector.Corner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SessionSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Game game;
+    private Corner[] corners;
+
+    @Before
+    public void setUp() {
+        game = new Game(19, "Preto", "Branco \u00e7\u00e3", "0.5");
+        game.replayMove(new Move(3, 3, Board.BLACK_STONE));
+        game.replayMove(new Move(15, 15, Board.WHITE_STONE));
+        game.replayMove(new Move(0, 1, Board.BLACK_STONE));
+        game.replayMove(new Move(0, 0, Board.WHITE_STONE));
+        // Captures the white stone in the corner
+        game.replayMove(new Move(1, 0, Board.BLACK_STONE));
+        game.setPrecisionStatistics(3, 2);
+
+        corners = new Corner[4];
+        corners[0] = new Corner(10, 20);
+        corners[1] = new Corner(630, 15, true);
+        corners[1].displacementToRealCorner.x = -6;
+        corners[1].displacementToRealCorner.y = 7;
+        corners[1].stonePosition = new RotatedRect();
+        corners[1].stonePosition.center.x = 630.5;
+        corners[1].stonePosition.center.y = 15.25;
+        corners[1].stonePosition.size.width = 22;
+        corners[1].stonePosition.size.height = 24.5;
+        corners[1].stonePosition.angle = 12.75;
+        corners[2] = new Corner(620, 470);
+        corners[3] = new Corner(25, 460);
+    }
+
+    private static Corner[] createEmptyCorners() {
+        Corner[] corners = new Corner[4];
+        for (int i = 0; i < 4; i++) {
+            corners[i] = new Corner();
+        }
+        return corners;
+    }
+
+    private void assertSameSession(Game restoredGame, Corner[] restoredCorners) {
+        assertEquals(game.sgf(), restoredGame.sgf());
+        assertEquals(3, restoredGame.getNumberOfUndoes());
+        assertEquals(2, restoredGame.getNumberOfManualAdditions());
+        assertTrue(game.getLastBoard().isIdenticalTo(restoredGame.getLastBoard()));
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(corners[i].position.x, restoredCorners[i].position.x);
+            assertEquals(corners[i].position.y, restoredCorners[i].position.y);
+            assertEquals(corners[i].displacementToRealCorner.x, restoredCorners[i].displacementToRealCorner.x);
+            assertEquals(corners[i].displacementToRealCorner.y, restoredCorners[i].displacementToRealCorner.y);
+            assertEquals(corners[i].isStone, restoredCorners[i].isStone);
+            if (corners[i].stonePosition == null) {
+                assertNull(restoredCorners[i].stonePosition);
+            } else {
+                assertEquals(corners[i].stonePosition, restoredCorners[i].stonePosition);
+            }
+        }
+    }
+
+    @Test
+    public void testDecodeRestoresTheEncodedSession() throws IOException {
+        Game restoredGame = new Game(9, "", "", "");
+        Corner[] restoredCorners = createEmptyCorners();
+        SessionSnapshot.decode(SessionSnapshot.encode(game, corners), restoredGame, restoredCorners);
+        assertSameSession(restoredGame, restoredCorners);
+    }
+
+    @Test
+    public void testReadReturnsTheWrittenSnapshot() throws IOException {
+        File file = new File(folder.getRoot(), "temp_file");
+        SessionSnapshot.writeInBackground(SessionSnapshot.encode(game, corners), file);
+        // Waits for the snapshot to be written
+        ByteBuffer snapshot = SessionSnapshot.read(file);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        Game restoredGame = new Game(9, "", "", "");
+        Corner[] restoredCorners = createEmptyCorners();
+        SessionSnapshot.decode(snapshot, restoredGame, restoredCorners);
+        assertSameSession(restoredGame, restoredCorners);
+    }
+
+    @Test
+    public void testTruncatedSnapshotIsNotDecoded() {
+        ByteBuffer snapshot = SessionSnapshot.encode(game, corners);
+        for (int length = 0; length < snapshot.limit(); length++) {
+            ByteBuffer truncatedSnapshot = snapshot.duplicate();
+            truncatedSnapshot.limit(length);
+            assertNotDecoded(truncatedSnapshot);
+        }
+    }
+
+    @Test
+    public void testSnapshotWithWrongMagicNumberIsNotDecoded() {
+        ByteBuffer snapshot = SessionSnapshot.encode(game, corners);
+        snapshot.put(0, (byte) 'X');
+        assertNotDecoded(snapshot);
+    }
+
+    @Test
+    public void testSnapshotOfAnotherVersionIsNotDecoded() {
+        ByteBuffer snapshot = SessionSnapshot.encode(game, corners);
+        snapshot.putShort(4, (short) 2);
+        assertNotDecoded(snapshot);
+    }
+
+    @Test
+    public void testSnapshotWithInvalidMoveIsNotDecoded() {
+        ByteBuffer snapshot = SessionSnapshot.encode(game, corners);
+        // The second move is put on the same position as the first one. The moves start after
+        // the magic number, the version, the dimension, the strings (the name of the white player
+        // takes 11 bytes in UTF-8) and three counters.
+        int firstMove = 4 + 2 + 4 + (2 + 3) + (2 + 5) + (2 + 11) + 4 + 4 + 4;
+        snapshot.put(firstMove + 4 + 1, (byte) 3);
+        snapshot.put(firstMove + 4 + 2, (byte) 3);
+        assertNotDecoded(snapshot);
+    }
+
+    /**
+     * Checks that decoding the snapshot fails and doesn't change the game and the corners.
+     */
+    private void assertNotDecoded(ByteBuffer snapshot) {
+        Game restoredGame = new Game(9, "Black", "White", "6.5");
+        restoredGame.replayMove(new Move(4, 4, Board.BLACK_STONE));
+        String sgf = restoredGame.sgf();
+        Corner[] restoredCorners = createEmptyCorners();
+        restoredCorners[2].position.x = 100;
+
+        try {
+            SessionSnapshot.decode(snapshot, restoredGame, restoredCorners);
+            fail("Invalid snapshot of " + snapshot.limit() + " bytes was decoded");
+        } catch (IOException e) {
+            // Expected
+        }
+        assertEquals(sgf, restoredGame.sgf());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i == 2 ? 100 : 0, restoredCorners[i].position.x);
+            assertEquals(0, restoredCorners[i].position.y);
+            assertFalse(restoredCorners[i].isStone);
+            assertNull(restoredCorners[i].stonePosition);
+        }
+    }
+
+}
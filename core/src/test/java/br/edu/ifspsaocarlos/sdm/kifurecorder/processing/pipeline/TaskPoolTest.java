@@ -0,0 +1,75 @@
+package br.edu.ifspsaocarlos.sdm.kifurecorder.processing.pipeline;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TaskPoolTest {
+
+    private static Runnable[] createTasks(final AtomicInteger numberOfFinishedTasks, final Throwable[] throwables) {
+        Runnable[] tasks = new Runnable[throwables.length];
+        for (int i = 0; i < tasks.length; i++) {
+            final Throwable throwable = throwables[i];
+            tasks[i] = new Runnable() {
+                @Override
+                public void run() {
+                    numberOfFinishedTasks.incrementAndGet();
+                    if (throwable instanceof RuntimeException) throw (RuntimeException) throwable;
+                    if (throwable instanceof Error) throw (Error) throwable;
+                }
+            };
+        }
+        return tasks;
+    }
+
+    @Test
+    public void testRunsAllTasks() {
+        TaskPool pool = new TaskPool("test", 3);
+        AtomicInteger numberOfFinishedTasks = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            pool.runAll(createTasks(numberOfFinishedTasks, new Throwable[4]));
+        }
+        assertEquals(400, numberOfFinishedTasks.get());
+    }
+
+    @Test
+    public void testExceptionOfATaskIsThrownAfterAllTasksFinish() {
+        TaskPool pool = new TaskPool("test", 3);
+        AtomicInteger numberOfFinishedTasks = new AtomicInteger();
+        IllegalStateException exception = new IllegalStateException();
+        try {
+            pool.runAll(createTasks(numberOfFinishedTasks, new Throwable[] {null, exception, null, null}));
+            fail("The exception of the task was not thrown");
+        } catch (IllegalStateException e) {
+            assertSame(exception, e);
+        }
+        assertEquals(4, numberOfFinishedTasks.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testErrorOfATaskIsThrownAndThePoolKeepsWorking() {
+        TaskPool pool = new TaskPool("test", 3);
+        AtomicInteger numberOfFinishedTasks = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            // Each task is in a different position, so the error is thrown in the workers too
+            Throwable[] throwables = new Throwable[4];
+            AssertionError error = new AssertionError("Error of task " + (i % 4));
+            throwables[i % 4] = error;
+            try {
+                pool.runAll(createTasks(numberOfFinishedTasks, throwables));
+                fail("The error of the task was not thrown");
+            } catch (AssertionError e) {
+                assertSame(error, e);
+            }
+        }
+        assertEquals(40, numberOfFinishedTasks.get());
+
+        pool.runAll(createTasks(numberOfFinishedTasks, new Throwable[4]));
+        assertEquals(44, numberOfFinishedTasks.get());
+    }
+
+}